@@ -21,10 +21,14 @@ import com.idonans.doodle.DoodleData;
 import com.idonans.doodle.DoodleView;
 import com.idonans.doodle.editor.DoodleDataEditor;
 import com.idonans.doodle.editor.v1.DoodleDataEditorV1;
+import com.idonans.doodle.editor.v2.DoodleDataEditorV2;
+import com.idonans.doodle.editor.v3.DoodleDataEditorV3;
+import com.idonans.doodle.editor.v3.DoodleDataJournal;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.util.HashMap;
 import java.util.UUID;
 
 public class MainActivity extends CommonActivity implements ConfirmAspectRadioSizeDialog.OnConfirmListener {
@@ -123,16 +127,14 @@ public class MainActivity extends CommonActivity implements ConfirmAspectRadioSi
 
         if (mDoodleDataKey == null) {
             mDoodleDataKey = UUID.randomUUID().toString();
-        } else {
-            // 删除上一次保存的临时数据
-            DoodleDataAsyncTask.remove(mDoodleDataKey);
         }
         outState.putString(EXTRA_DOODLE_DATA_KEY, mDoodleDataKey);
 
         mDoodleView.save(new DoodleView.SaveDataActionCallback() {
             @Override
             public void onDataSaved(@Nullable DoodleData doodleData) {
-                DoodleDataAsyncTask.save(mDoodleDataKey, doodleData);
+                // 临时数据以追加的方式保存在同一个文件中，每次只写入新增的内容
+                DoodleDataAsyncTask.saveJournal(mDoodleDataKey, doodleData);
             }
         });
 
@@ -189,6 +191,9 @@ public class MainActivity extends CommonActivity implements ConfirmAspectRadioSi
         // 使用单任务队列确保 save & load 不会冲突
         private static final TaskQueue mTaskQueue = new TaskQueue(1);
 
+        // 以追加方式保存的临时数据, 只在 mTaskQueue 中访问
+        private static final HashMap<String, DoodleDataJournal> mJournals = new HashMap<>();
+
         public static void save(final String key, final DoodleData doodleData) {
             save(key, doodleData, null);
         }
@@ -211,7 +216,7 @@ public class MainActivity extends CommonActivity implements ConfirmAspectRadioSi
                         return;
                     }
 
-                    if (DoodleDataEditorV1.saveToFile(file.getAbsolutePath(), doodleData, ignoreEmptyDrawStep)) {
+                    if (DoodleDataEditorV2.saveToFile(file.getAbsolutePath(), doodleData, ignoreEmptyDrawStep)) {
                         StorageManager.getInstance().setCache(key, file.getAbsolutePath());
                         if (callback != null) {
                             callback.onSaveSuccess(file.getAbsolutePath());
@@ -225,17 +230,57 @@ public class MainActivity extends CommonActivity implements ConfirmAspectRadioSi
             });
         }
 
+        /**
+         * 以追加的方式保存临时数据, 同一个 key 多次保存时只写入新增的内容. doodleData 为 null 时删除已经保存的数据.
+         */
+        public static void saveJournal(final String key, final DoodleData doodleData) {
+            mTaskQueue.enqueue(new Runnable() {
+                @Override
+                public void run() {
+                    if (doodleData == null) {
+                        // 空白的画布
+                        removeNow(key);
+                        return;
+                    }
+
+                    DoodleDataJournal journal = mJournals.get(key);
+                    if (journal == null) {
+                        File file = FileUtil.createNewTmpFileQuietly("doodle", ".dd", FileUtil.getPublicPictureDir());
+                        if (file == null) {
+                            showMessage("save to dd file... fail to create file");
+                            return;
+                        }
+                        // 删除之前保存的临时数据(例如进程重启之前保存的文件)
+                        removeNow(key);
+                        journal = new DoodleDataJournal(file.getAbsolutePath(), true);
+                        mJournals.put(key, journal);
+                    }
+
+                    if (journal.save(doodleData)) {
+                        StorageManager.getInstance().setCache(key, journal.getFilePath());
+                    } else {
+                        showMessage("save to dd file... fail to save");
+                    }
+                }
+            });
+        }
+
         public static void remove(final String key) {
             mTaskQueue.enqueue(new Runnable() {
                 @Override
                 public void run() {
-                    String ddFilePath = StorageManager.getInstance().getCache(key);
-                    StorageManager.getInstance().setCache(key, null);
-                    FileUtil.deleteFileQuietly(ddFilePath);
+                    removeNow(key);
                 }
             });
         }
 
+        private static void removeNow(String key) {
+            mJournals.remove(key);
+            String ddFilePath = StorageManager.getInstance().getCache(key);
+            StorageManager.getInstance().setCache(key, null);
+            FileUtil.deleteFileQuietly(ddFilePath);
+        }
+
         /**
          * callback on ui thread
          */
@@ -253,11 +298,15 @@ public class MainActivity extends CommonActivity implements ConfirmAspectRadioSi
                     if (ddVersion == -1) {
                         showMessage("dd 文件已被破坏");
                         doodleData = null;
-                    } else if (ddVersion != 1) {
+                    } else if (ddVersion == 1) {
+                        doodleData = DoodleDataEditorV1.readFromFile(ddFilePath);
+                    } else if (ddVersion == 2) {
+                        doodleData = DoodleDataEditorV2.readFromFile(ddFilePath);
+                    } else if (ddVersion == 3) {
+                        doodleData = DoodleDataEditorV3.readFromFile(ddFilePath);
+                    } else {
                         showMessage("dd 文件版本不支持");
                         doodleData = null;
-                    } else {
-                        doodleData = DoodleDataEditorV1.readFromFile(ddFilePath);
                     }
 
                     Threads.runOnUi(new Runnable() {
@@ -291,11 +340,15 @@ public class MainActivity extends CommonActivity implements ConfirmAspectRadioSi
                     if (ddVersion == -1) {
                         showMessage("dd 文件已被破坏");
                         doodleData = null;
-                    } else if (ddVersion != 1) {
+                    } else if (ddVersion == 1) {
+                        doodleData = DoodleDataEditorV1.readFromFile(ddFilePath);
+                    } else if (ddVersion == 2) {
+                        doodleData = DoodleDataEditorV2.readFromFile(ddFilePath);
+                    } else if (ddVersion == 3) {
+                        doodleData = DoodleDataEditorV3.readFromFile(ddFilePath);
+                    } else {
                         showMessage("dd 文件版本不支持");
                         doodleData = null;
-                    } else {
-                        doodleData = DoodleDataEditorV1.readFromFile(ddFilePath);
                     }
                     Threads.runOnUi(new Runnable() {
                         @Override
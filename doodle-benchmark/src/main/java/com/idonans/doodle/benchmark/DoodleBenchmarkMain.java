@@ -0,0 +1,73 @@
+package com.idonans.doodle.benchmark;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 运行 .dd 编解码的基准测试, 总是开启 GC profiler(输出分配速率), 结束后汇总输出 MB/s 和 steps/s.
+ * 接受 JMH 的命令行参数, 例如 "-p version=2 -f 3".
+ * Created by pengji on 16-7-30.
+ */
+public class DoodleBenchmarkMain {
+
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder builder = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class);
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            builder.include(DoodleCodecBenchmark.class.getSimpleName());
+        }
+
+        Collection<RunResult> runResults = new Runner(builder.build()).run();
+
+        System.out.println();
+        System.out.println(String.format("%-12s %-8s %-8s %-8s %-10s %12s %12s %14s %14s",
+                "benchmark", "version", "strokes", "points", "brushMix", "ops/s", "MB/s", "steps/s", "B/op"));
+        for (RunResult runResult : runResults) {
+            BenchmarkParams params = runResult.getParams();
+            String benchmark = params.getBenchmark();
+            benchmark = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+            Map<String, Result> secondaryResults = runResult.getSecondaryResults();
+            System.out.println(String.format("%-12s %-8s %-8s %-8s %-10s %12.1f %12s %14s %14s",
+                    benchmark,
+                    params.getParam("version"),
+                    params.getParam("strokeCount"),
+                    params.getParam("pointsPerStroke"),
+                    params.getParam("brushMix"),
+                    runResult.getPrimaryResult().getScore(),
+                    format(secondaryResults.get("bytes"), BYTES_PER_MB),
+                    format(secondaryResults.get("steps"), 1),
+                    format(findResult(secondaryResults, "gc.alloc.rate.norm"), 1)));
+        }
+    }
+
+    // GC profiler 输出的名称带有前缀
+    private static Result findResult(Map<String, Result> results, String nameSuffix) {
+        for (Map.Entry<String, Result> entry : results.entrySet()) {
+            if (entry.getKey().endsWith(nameSuffix)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String format(Result result, double unit) {
+        if (result == null) {
+            return "-";
+        }
+        return String.format("%.1f", result.getScore() / unit);
+    }
+
+}
@@ -0,0 +1,207 @@
+package com.idonans.doodle.benchmark;
+
+import com.idonans.doodle.DoodleData;
+import com.idonans.doodle.editor.DoodleDataEditor;
+import com.idonans.doodle.editor.v1.DoodleDataEditorV1;
+import com.idonans.doodle.editor.v2.DoodleDataEditorV2;
+import com.idonans.doodle.editor.v3.DoodleDataEditorV3;
+import com.idonans.doodle.util.StreamUtil;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * .dd 文件的编解码吞吐量: 写入, 完整读取, 版本探测, 写入之后再读取.
+ * 除了每秒操作数之外, 通过 {@link Throughput} 同时输出每秒处理的字节数和绘画步骤数.
+ * 所有版本的写入都只编码并写入文件, 不同步到磁盘(版本 3 不经过 DoodleDataJournal).
+ * Created by pengji on 16-7-30.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DoodleCodecBenchmark {
+
+    /**
+     * dd 文件的版本
+     */
+    @Param({"1", "2", "3"})
+    public int version;
+
+    @Param({"200", "2000"})
+    public int strokeCount;
+
+    @Param({"64"})
+    public int pointsPerStroke;
+
+    /**
+     * 见 {@link SyntheticDoodle.BrushMix}
+     */
+    @Param({"1:0:0:0", "4:2:1:1"})
+    public String brushMix;
+
+    private DoodleData mDoodleData;
+    private File mDir;
+    // 读取使用的文件, 在每一轮测试开始前写入
+    private String mReadFilePath;
+    // 写入使用的文件, 每次写入都会覆盖
+    private String mWriteFilePath;
+    // 文件的字节数和其中的绘画步骤数量(不包括被忽略的空步骤)
+    private long mFileBytes;
+    private int mStepCount;
+
+    /**
+     * 每一次操作处理的字节数和绘画步骤数量, JMH 按照每秒的速率输出
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class Throughput {
+        public long bytes;
+        public long steps;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            steps = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mDoodleData = SyntheticDoodle.create(strokeCount, pointsPerStroke, brushMix);
+
+        mDir = File.createTempFile("doodle-benchmark", "");
+        if (!mDir.delete() || !mDir.mkdirs()) {
+            throw new IOException("fail to create dir " + mDir);
+        }
+        mReadFilePath = new File(mDir, "read.dd").getAbsolutePath();
+        mWriteFilePath = new File(mDir, "write.dd").getAbsolutePath();
+
+        save(mReadFilePath);
+        mFileBytes = new File(mReadFilePath).length();
+        DoodleData doodleData = read(mReadFilePath);
+        mStepCount = doodleData.drawStepDatas != null ? doodleData.drawStepDatas.size() : 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        new File(mReadFilePath).delete();
+        new File(mWriteFilePath).delete();
+        mDir.delete();
+    }
+
+    @Benchmark
+    public boolean write(Throughput throughput) {
+        boolean saved = save(mWriteFilePath);
+        throughput.bytes += mFileBytes;
+        throughput.steps += mStepCount;
+        return saved;
+    }
+
+    @Benchmark
+    public DoodleData read(Throughput throughput) {
+        DoodleData doodleData = read(mReadFilePath);
+        throughput.bytes += mFileBytes;
+        throughput.steps += mStepCount;
+        return doodleData;
+    }
+
+    @Benchmark
+    public int getVersion() {
+        int version = DoodleDataEditor.getVersion(mReadFilePath);
+        if (version != this.version) {
+            throw new IllegalStateException("version not match " + version);
+        }
+        return version;
+    }
+
+    /**
+     * 写入之后立即读取, 字节数和绘画步骤数量只计算一次
+     */
+    @Benchmark
+    public DoodleData roundTrip(Throughput throughput) {
+        save(mWriteFilePath);
+        DoodleData doodleData = read(mWriteFilePath);
+        throughput.bytes += mFileBytes;
+        throughput.steps += mStepCount;
+        return doodleData;
+    }
+
+    // 编解码失败时直接中断测试, 避免把失败的操作计入结果
+    private boolean save(String filePath) {
+        boolean saved;
+        if (version == 1) {
+            saved = DoodleDataEditorV1.saveToFile(filePath, mDoodleData);
+        } else if (version == 2) {
+            saved = DoodleDataEditorV2.saveToFile(filePath, mDoodleData);
+        } else if (version == 3) {
+            saved = saveV3(filePath);
+        } else {
+            throw new IllegalArgumentException("unknown version " + version);
+        }
+        if (!saved) {
+            throw new IllegalStateException("fail to save " + filePath);
+        }
+        return true;
+    }
+
+    /**
+     * 版本 3 的 saveToFile 经过 DoodleDataJournal, 会同步到磁盘并替换文件, 测量的主要是磁盘的同步耗时.
+     * 这里与版本 1, 2 一样只编码并写入文件, 结果可以与其他版本以及不同的 commit 比较
+     */
+    private boolean saveV3(String filePath) {
+        FileOutputStream fos = null;
+        BufferedOutputStream bos = null;
+        try {
+            fos = new FileOutputStream(filePath, false);
+            bos = new BufferedOutputStream(fos);
+            DoodleDataEditorV3.writeTo(mDoodleData, true, bos);
+            bos.flush();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            StreamUtil.closeQuietly(bos);
+            StreamUtil.closeQuietly(fos);
+        }
+        return false;
+    }
+
+    private DoodleData read(String filePath) {
+        DoodleData doodleData;
+        if (version == 1) {
+            doodleData = DoodleDataEditorV1.readFromFile(filePath);
+        } else if (version == 2) {
+            doodleData = DoodleDataEditorV2.readFromFile(filePath);
+        } else if (version == 3) {
+            doodleData = DoodleDataEditorV3.readFromFile(filePath);
+        } else {
+            throw new IllegalArgumentException("unknown version " + version);
+        }
+        if (doodleData == null) {
+            throw new IllegalStateException("fail to read " + filePath);
+        }
+        return doodleData;
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.idonans.doodle.benchmark;
+
+import com.idonans.doodle.DoodleData;
+import com.idonans.doodle.PointBuffer;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * 确定性的合成涂鸦数据, 相同的参数总是生成完全相同的 DoodleData, 保证不同 commit 之间的基准测试结果可以比较.
+ * 自由绘制的轨迹是随机游走的平滑曲线, 模拟手指在屏幕上的移动.
+ * Created by pengji on 16-7-30.
+ */
+public class SyntheticDoodle {
+
+    public static final long SEED_DEFAULT = 20160730L;
+
+    public static final int WIDTH = 1080;
+    public static final int HEIGHT = 1920;
+
+    private SyntheticDoodle() {
+    }
+
+    /**
+     * 画笔(步骤类型)的分布权重, 格式为 "铅笔:柳叶笔:画点:空步骤", 例如 "4:2:1:0". 省略的部分权重为 0.
+     */
+    public static class BrushMix {
+        public final int pencil;
+        public final int leaves;
+        public final int point;
+        public final int empty;
+
+        public BrushMix(int pencil, int leaves, int point, int empty) {
+            if (pencil < 0 || leaves < 0 || point < 0 || empty < 0) {
+                throw new IllegalArgumentException("weight must >= 0");
+            }
+            if (pencil + leaves + point + empty <= 0) {
+                throw new IllegalArgumentException("at least one weight must > 0");
+            }
+            this.pencil = pencil;
+            this.leaves = leaves;
+            this.point = point;
+            this.empty = empty;
+        }
+
+        public static BrushMix parse(String brushMix) {
+            String[] parts = brushMix.trim().split(":");
+            if (parts.length > 4) {
+                throw new IllegalArgumentException("brush mix error " + brushMix);
+            }
+            int[] weights = new int[4];
+            for (int i = 0; i < parts.length; i++) {
+                weights[i] = Integer.parseInt(parts[i].trim());
+            }
+            return new BrushMix(weights[0], weights[1], weights[2], weights[3]);
+        }
+
+        private int getTotal() {
+            return pencil + leaves + point + empty;
+        }
+
+        @Override
+        public String toString() {
+            return pencil + ":" + leaves + ":" + point + ":" + empty;
+        }
+    }
+
+    public static DoodleData create(int strokeCount, int pointsPerStroke, String brushMix) {
+        return create(SEED_DEFAULT, strokeCount, pointsPerStroke, BrushMix.parse(brushMix));
+    }
+
+    /**
+     * @param strokeCount     绘画步骤数量(全部位于渲染区)
+     * @param pointsPerStroke 每一个自由绘制的坐标点数量, 画点总是一个坐标点
+     */
+    public static DoodleData create(long seed, int strokeCount, int pointsPerStroke, BrushMix brushMix) {
+        if (strokeCount < 0) {
+            throw new IllegalArgumentException("stroke count must >= 0");
+        }
+        if (pointsPerStroke < 2) {
+            throw new IllegalArgumentException("points per stroke must >= 2");
+        }
+
+        Random random = new Random(seed);
+        DoodleData doodleData = new DoodleData();
+        doodleData.setSize(WIDTH, HEIGHT);
+        doodleData.setBackgroundColor(0xFFFFFFFF);
+        doodleData.drawStepDatas = new ArrayList<>(strokeCount);
+
+        final int total = brushMix.getTotal();
+        for (int i = 0; i < strokeCount; i++) {
+            int r = random.nextInt(total);
+            DoodleData.DrawStepData drawStepData = new DoodleData.DrawStepData();
+            if (r < brushMix.pencil) {
+                drawStepData.type = DoodleData.DRAW_STEP_TYPE_SCRIBBLE;
+                drawStepData.brushData = createBrushData(random, DoodleData.BRUSH_TYPE_PENCIL);
+                drawStepData.points = createStroke(random, pointsPerStroke);
+            } else if ((r -= brushMix.pencil) < brushMix.leaves) {
+                drawStepData.type = DoodleData.DRAW_STEP_TYPE_SCRIBBLE;
+                drawStepData.brushData = createBrushData(random, DoodleData.BRUSH_TYPE_LEAVES);
+                drawStepData.points = createStroke(random, pointsPerStroke);
+            } else if (r - brushMix.leaves < brushMix.point) {
+                drawStepData.type = DoodleData.DRAW_STEP_TYPE_POINT;
+                drawStepData.brushData = createBrushData(random, DoodleData.BRUSH_TYPE_PENCIL);
+                drawStepData.points = new PointBuffer(2);
+                drawStepData.points.add(random.nextFloat() * WIDTH, random.nextFloat() * HEIGHT);
+            } else {
+                drawStepData.type = DoodleData.DRAW_STEP_TYPE_EMPTY;
+            }
+            doodleData.drawStepDatas.add(drawStepData);
+        }
+        return doodleData;
+    }
+
+    private static DoodleData.BrushData createBrushData(Random random, int brushType) {
+        DoodleData.BrushData brushData = new DoodleData.BrushData();
+        brushData.type = brushType;
+        brushData.color = 0xFF000000 | random.nextInt(0x1000000);
+        brushData.size = 4 + random.nextInt(60);
+        brushData.alpha = 128 + random.nextInt(128);
+        return brushData;
+    }
+
+    /**
+     * 随机游走的轨迹: 方向缓慢变化, 相邻两点之间的距离与手指滑动时的采样间隔相当
+     */
+    private static PointBuffer createStroke(Random random, int pointCount) {
+        PointBuffer points = new PointBuffer(pointCount * 2);
+        float x = random.nextFloat() * WIDTH;
+        float y = random.nextFloat() * HEIGHT;
+        double angle = random.nextDouble() * Math.PI * 2;
+        points.add(x, y);
+        for (int i = 1; i < pointCount; i++) {
+            angle += random.nextGaussian() * 0.3;
+            float distance = 2f + random.nextFloat() * 18f;
+            x = clamp(x + (float) (Math.cos(angle) * distance), WIDTH);
+            y = clamp(y + (float) (Math.sin(angle) * distance), HEIGHT);
+            points.add(x, y);
+        }
+        return points.freeze();
+    }
+
+    private static float clamp(float value, int max) {
+        return Math.max(0f, Math.min(value, max));
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.idonans.doodle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 涂鸦板的数据，用于涂鸦板的保存和恢复，可用于加载其他涂鸦板的内容.
+ * 不依赖 Android, 与绘画步骤和画笔之间的转换见 doodle 模块中的 DoodleDataUtil.
+ * Created by pengji on 16-6-20.
+ */
+public class DoodleData {
+
+    /**
+     * 图像的宽度
+     */
+    public int width;
+
+    /**
+     * 图像的高度
+     */
+    public int height;
+
+    /**
+     * 背景色
+     */
+    public int backgroundColor;
+
+    public ArrayList<DrawStepData> drawStepDatas;
+    public ArrayList<DrawStepData> drawStepDatasRedo;
+
+    public void setBackgroundColor(int backgroundColor) {
+        this.backgroundColor = backgroundColor;
+    }
+
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public static class DrawStepData {
+
+        public BrushData brushData;
+        /**
+         * 绘画步骤类型
+         */
+        public int type;
+        /**
+         * 坐标点 (x0, y0, x1, y1, ...). 与绘画步骤互相转换时直接共享(会被冻结)，不会复制
+         */
+        public PointBuffer points;
+
+        /**
+         * 返回 points 的装箱副本, 修改副本不会影响 points. points 为 null 时返回 null
+         *
+         * @deprecated 每一个坐标值都会装箱, 直接使用 {@link #points}
+         */
+        @Deprecated
+        public ArrayList<Float> getPointList() {
+            return points != null ? points.toList() : null;
+        }
+
+        /**
+         * 使用装箱的坐标值列表 (x0, y0, x1, y1, ...) 替换 points
+         *
+         * @deprecated 每一个坐标值都会装箱, 直接使用 {@link #points}
+         */
+        @Deprecated
+        public void setPointList(List<Float> pointList) {
+            points = pointList != null ? PointBuffer.fromList(pointList) : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DrawStepData)) {
+                return false;
+            }
+            DrawStepData drawStepData = (DrawStepData) o;
+            if (type != drawStepData.type) {
+                return false;
+            }
+            if (brushData != null ? !brushData.equals(drawStepData.brushData) : drawStepData.brushData != null) {
+                return false;
+            }
+            return points != null ? points.equals(drawStepData.points) : drawStepData.points == null;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type;
+            result = 31 * result + (brushData != null ? brushData.hashCode() : 0);
+            result = 31 * result + (points != null ? points.size() : 0);
+            return result;
+        }
+    }
+
+    public static class BrushData {
+        /**
+         * 画笔类型
+         */
+        public int type;
+        /**
+         * argb or rgb
+         */
+        public int color;
+        public int size;
+        /**
+         * 画刷的透明度 [0, 255], 值越大越不透明
+         */
+        public int alpha;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BrushData)) {
+                return false;
+            }
+            BrushData brushData = (BrushData) o;
+            return type == brushData.type
+                    && color == brushData.color
+                    && size == brushData.size
+                    && alpha == brushData.alpha;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type;
+            result = 31 * result + color;
+            result = 31 * result + size;
+            result = 31 * result + alpha;
+            return result;
+        }
+
+    }
+
+    //////
+    /**
+     * 空步骤
+     */
+    public static final int DRAW_STEP_TYPE_EMPTY = 1;
+    /**
+     * 画点
+     */
+    public static final int DRAW_STEP_TYPE_POINT = 2;
+    /**
+     * 自由绘制
+     */
+    public static final int DRAW_STEP_TYPE_SCRIBBLE = 3;
+
+    /**
+     * 不解码绘画步骤，根据类型和坐标点数量计算子步骤数量, 与对应的绘画步骤 DrawStep#resetSubStep 之后的子步骤数量一致.
+     * 只有有绘画内容的步骤才有子步骤(画点为 1, 自由绘制为坐标点数量 - 1), 没有绘画内容的步骤返回 0.
+     */
+    public static int getSubStepCount(int type, int pointCount) {
+        if (type == DRAW_STEP_TYPE_SCRIBBLE) {
+            return pointCount > 1 ? pointCount - 1 : 0;
+        } else if (type == DRAW_STEP_TYPE_POINT) {
+            return 1;
+        } else {
+            return 0;
+        }
+    }
+
+    //////
+    /**
+     * 空画笔
+     */
+    public static final int BRUSH_TYPE_EMPTY = 1;
+    /**
+     * 铅笔
+     */
+    public static final int BRUSH_TYPE_PENCIL = 2;
+    /**
+     * 柳叶笔
+     */
+    public static final int BRUSH_TYPE_LEAVES = 3;
+
+    //////
+
+}
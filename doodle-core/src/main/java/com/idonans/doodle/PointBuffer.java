@@ -0,0 +1,169 @@
+package com.idonans.doodle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 可增长的坐标点缓冲区, 坐标值以 float 数组的形式连续保存 (x0, y0, x1, y1, ...), 不会对每一个坐标值装箱.
+ * 冻结({@link #freeze()})之后缓冲区不能再修改，可以在绘画步骤和 DoodleData 之间直接共享而不需要复制.
+ * Created by pengji on 16-7-27.
+ */
+public class PointBuffer {
+
+    private static final int DEFAULT_CAPACITY = 32;
+
+    private float[] mValues;
+    private int mSize;
+    private boolean mFrozen;
+
+    public PointBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 初始容量(坐标值的个数，一个坐标点占两个位置)
+     */
+    public PointBuffer(int capacity) {
+        mValues = new float[Math.max(capacity, 2)];
+    }
+
+    /**
+     * 复制指定缓冲区中的所有坐标值, 新的缓冲区没有冻结
+     */
+    public PointBuffer(PointBuffer other) {
+        mValues = new float[Math.max(other.mSize, 2)];
+        System.arraycopy(other.mValues, 0, mValues, 0, other.mSize);
+        mSize = other.mSize;
+    }
+
+    /**
+     * 坐标值的个数, 总是坐标点数量的两倍
+     */
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public int getPointCount() {
+        return mSize / 2;
+    }
+
+    /**
+     * 获取指定位置的坐标值
+     */
+    public float get(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + mSize);
+        }
+        return mValues[index];
+    }
+
+    /**
+     * 在末尾追加一个坐标点
+     */
+    public void add(float x, float y) {
+        checkNotFrozen();
+        if (mSize + 2 > mValues.length) {
+            float[] values = new float[mValues.length * 2];
+            System.arraycopy(mValues, 0, values, 0, mSize);
+            mValues = values;
+        }
+        mValues[mSize++] = x;
+        mValues[mSize++] = y;
+    }
+
+    /**
+     * 预留至少可以容纳 capacity 个坐标值的空间, 之后追加的坐标点在该容量之内时不需要扩容
+     */
+    public void ensureCapacity(int capacity) {
+        checkNotFrozen();
+        if (capacity > mValues.length) {
+            float[] values = new float[capacity];
+            System.arraycopy(mValues, 0, values, 0, mSize);
+            mValues = values;
+        }
+    }
+
+    public void clear() {
+        checkNotFrozen();
+        mSize = 0;
+    }
+
+    /**
+     * 冻结缓冲区，之后不能再修改. 返回当前缓冲区
+     */
+    public PointBuffer freeze() {
+        mFrozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return mFrozen;
+    }
+
+    private void checkNotFrozen() {
+        if (mFrozen) {
+            throw new IllegalStateException("point buffer is frozen");
+        }
+    }
+
+    /**
+     * 转换为装箱的坐标值列表, 用于兼容旧的接口
+     */
+    public ArrayList<Float> toList() {
+        ArrayList<Float> list = new ArrayList<>(mSize);
+        for (int i = 0; i < mSize; i++) {
+            list.add(mValues[i]);
+        }
+        return list;
+    }
+
+    /**
+     * 从装箱的坐标值列表创建
+     */
+    public static PointBuffer fromList(List<Float> list) {
+        int size = list.size();
+        if (size % 2 != 0) {
+            throw new IllegalArgumentException("size error, not covert as point. " + size);
+        }
+        PointBuffer pointBuffer = new PointBuffer(size);
+        for (int i = 0; i < size; i += 2) {
+            pointBuffer.add(list.get(i), list.get(i + 1));
+        }
+        return pointBuffer;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PointBuffer)) {
+            return false;
+        }
+        PointBuffer pointBuffer = (PointBuffer) o;
+        if (mSize != pointBuffer.mSize) {
+            return false;
+        }
+        for (int i = 0; i < mSize; i++) {
+            // 与 Float#equals 的比较方式一致
+            if (Float.floatToIntBits(mValues[i]) != Float.floatToIntBits(pointBuffer.mValues[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < mSize; i++) {
+            result = 31 * result + Float.floatToIntBits(mValues[i]);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.idonans.doodle.drawstep;
+
+/**
+ * 子步骤的计数, 记录子步骤的总数量和当前已经移动的数量, 不涉及绘制.
+ * Created by pengji on 16-7-30.
+ */
+public class SubStepCounter {
+
+    private final int mCount;
+    private int mMoved;
+
+    public SubStepCounter(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must >= 0");
+        }
+        mCount = count;
+    }
+
+    public int getMoved() {
+        return mMoved;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * 移动指定数量的子步骤（带方向）, 超出 [0, count] 的部分被忽略, 返回实际移动的数量（带方向）
+     */
+    public int moveBy(int count) {
+        int tmpMoved = mMoved + count;
+        if (tmpMoved < 0) {
+            tmpMoved = 0;
+        } else if (tmpMoved > mCount) {
+            tmpMoved = mCount;
+        }
+
+        int movedCountThis = tmpMoved - mMoved;
+        mMoved = tmpMoved;
+        return movedCountThis;
+    }
+
+}
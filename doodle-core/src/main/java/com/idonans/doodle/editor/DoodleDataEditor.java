@@ -1,9 +1,6 @@
 package com.idonans.doodle.editor;
 
-import android.support.annotation.NonNull;
-
-import com.idonans.acommon.lang.Charsets;
-import com.idonans.acommon.util.IOUtil;
+import com.idonans.doodle.util.StreamUtil;
 
 import java.io.BufferedReader;
 import java.io.FileInputStream;
@@ -18,7 +15,8 @@ import java.io.Writer;
 public class DoodleDataEditor {
 
     /**
-     * 分析并返回指定 dd 文件的版本，如果分析出错返回 -1
+     * 分析并返回指定 dd 文件的版本，如果分析出错返回 -1.
+     * 所有版本的 dd 文件前两行格式相同(标识符行和版本行)，二进制格式(版本 2, 版本 3)也可以通过此方法识别.
      */
     public static int getVersion(String filePath) {
         FileInputStream fis = null;
@@ -26,7 +24,7 @@ public class DoodleDataEditor {
         BufferedReader br = null;
         try {
             fis = new FileInputStream(filePath);
-            isr = new InputStreamReader(fis, Charsets.UTF8);
+            isr = new InputStreamReader(fis, StreamUtil.UTF8);
             br = new BufferedReader(isr);
 
             String ddLine = readTrueLine(br);
@@ -38,9 +36,9 @@ public class DoodleDataEditor {
         } catch (Throwable e) {
             e.printStackTrace();
         } finally {
-            IOUtil.closeQuietly(br);
-            IOUtil.closeQuietly(isr);
-            IOUtil.closeQuietly(fis);
+            StreamUtil.closeQuietly(br);
+            StreamUtil.closeQuietly(isr);
+            StreamUtil.closeQuietly(fis);
         }
         return -1;
     }
@@ -48,7 +46,7 @@ public class DoodleDataEditor {
     /**
      * 读取一行数据，排除注释行，空行，和行两端的空白字符
      */
-    public static String readTrueLine(@NonNull BufferedReader br) throws IOException {
+    public static String readTrueLine(BufferedReader br) throws IOException {
         do {
             String line = br.readLine();
             if (line == null) {
@@ -72,7 +70,7 @@ public class DoodleDataEditor {
     /**
      * 写入一行数据(写入时会在末尾追加换行符)
      */
-    public static void writeLine(@NonNull Object object, @NonNull Writer writer) throws IOException {
+    public static void writeLine(Object object, Writer writer) throws IOException {
         writer.write(object.toString());
         writer.write("\n");
     }
@@ -0,0 +1,135 @@
+package com.idonans.doodle.editor;
+
+import com.idonans.doodle.DoodleData;
+import com.idonans.doodle.PointBuffer;
+import com.idonans.doodle.editor.v1.DoodleDataEditorV1;
+import com.idonans.doodle.editor.v2.DoodleDataEditorV2;
+import com.idonans.doodle.editor.v3.DoodleDataEditorV3;
+import com.idonans.doodle.util.DoodleTrace;
+
+import java.util.ArrayList;
+
+/**
+ * 以事件的方式流式读取 dd 文件，读取过程中不会构建完整的 DoodleData, 坐标点以 float 的形式回调.
+ * Created by pengji on 16-7-21.
+ */
+public class DoodleDataReader {
+
+    /**
+     * 读取事件回调. 每一个绘画步骤的事件顺序总是：
+     * onDrawStepBegin -> onPoint (零次或多次) -> onBrush (零次或一次) -> onDrawStepEnd
+     */
+    public interface Handler {
+
+        /**
+         * 读取到文件头, 总是在所有绘画步骤之前回调
+         */
+        void onHeader(int width, int height, int backgroundColor);
+
+        /**
+         * 开始一个绘画步骤
+         *
+         * @param redo 该步骤是否属于 redo 区
+         */
+        void onDrawStepBegin(boolean redo, int drawStepType);
+
+        /**
+         * 当前绘画步骤中的一个坐标点
+         */
+        void onPoint(float x, float y);
+
+        /**
+         * 当前绘画步骤的笔刷
+         */
+        void onBrush(int brushType, int color, int size, int alpha);
+
+        /**
+         * 当前绘画步骤结束
+         */
+        void onDrawStepEnd();
+
+    }
+
+    /**
+     * 流式读取指定的 dd 文件，根据文件版本选择对应的解析方式. 读取成功返回 true, 否则返回 false.
+     * 读取失败时 handler 可能已经收到了部分事件.
+     */
+    public static boolean read(String filePath, boolean ignoreEmptyStep, Handler handler) {
+        DoodleTrace.beginSection("DoodleDataReader.read");
+        try {
+            return readInternal(filePath, ignoreEmptyStep, handler);
+        } finally {
+            DoodleTrace.endSection();
+        }
+    }
+
+    private static boolean readInternal(String filePath, boolean ignoreEmptyStep, Handler handler) {
+        int version = DoodleDataEditor.getVersion(filePath);
+        if (version == 1) {
+            return DoodleDataEditorV1.read(filePath, ignoreEmptyStep, handler);
+        } else if (version == 2) {
+            return DoodleDataEditorV2.read(filePath, ignoreEmptyStep, handler);
+        } else if (version == 3) {
+            return DoodleDataEditorV3.read(filePath, ignoreEmptyStep, handler);
+        }
+        return false;
+    }
+
+    /**
+     * 将读取事件构建为 DoodleData
+     */
+    public static class DoodleDataBuilder implements Handler {
+
+        private DoodleData mDoodleData;
+        private DoodleData.DrawStepData mDrawStepData;
+        private boolean mDrawStepRedo;
+
+        @Override
+        public void onHeader(int width, int height, int backgroundColor) {
+            mDoodleData = new DoodleData();
+            mDoodleData.setSize(width, height);
+            mDoodleData.setBackgroundColor(backgroundColor);
+            mDoodleData.drawStepDatas = new ArrayList<>();
+            mDoodleData.drawStepDatasRedo = new ArrayList<>();
+        }
+
+        @Override
+        public void onDrawStepBegin(boolean redo, int drawStepType) {
+            mDrawStepData = new DoodleData.DrawStepData();
+            mDrawStepData.type = drawStepType;
+            mDrawStepData.points = new PointBuffer();
+            mDrawStepRedo = redo;
+        }
+
+        @Override
+        public void onPoint(float x, float y) {
+            mDrawStepData.points.add(x, y);
+        }
+
+        @Override
+        public void onBrush(int brushType, int color, int size, int alpha) {
+            DoodleData.BrushData brushData = new DoodleData.BrushData();
+            brushData.type = brushType;
+            brushData.color = color;
+            brushData.size = size;
+            brushData.alpha = alpha;
+            mDrawStepData.brushData = brushData;
+        }
+
+        @Override
+        public void onDrawStepEnd() {
+            if (mDrawStepRedo) {
+                mDoodleData.drawStepDatasRedo.add(mDrawStepData);
+            } else {
+                mDoodleData.drawStepDatas.add(mDrawStepData);
+            }
+            mDrawStepData = null;
+        }
+
+        public DoodleData getDoodleData() {
+            return mDoodleData;
+        }
+
+    }
+
+}
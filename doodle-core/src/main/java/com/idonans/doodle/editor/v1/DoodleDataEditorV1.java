@@ -1,19 +1,17 @@
 package com.idonans.doodle.editor.v1;
 
-import com.idonans.acommon.lang.Charsets;
-import com.idonans.acommon.lang.CommonLog;
-import com.idonans.acommon.util.IOUtil;
 import com.idonans.doodle.DoodleData;
 import com.idonans.doodle.editor.DoodleDataEditor;
+import com.idonans.doodle.editor.DoodleDataReader;
+import com.idonans.doodle.util.DoodleLog;
+import com.idonans.doodle.util.DoodleTrace;
+import com.idonans.doodle.util.StreamUtil;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.util.ArrayList;
 
 /**
  * doodle data editor v1
@@ -34,6 +32,15 @@ public class DoodleDataEditorV1 extends DoodleDataEditor {
      * 将 DoodleData 保存到指定文件内，保存成功，返回 true, 否则返回 false.
      */
     public static boolean saveToFile(String filePath, DoodleData doodleData, boolean ignoreEmptyStep) {
+        DoodleTrace.beginSection("DoodleDataEditorV1.saveToFile");
+        try {
+            return saveToFileInternal(filePath, doodleData, ignoreEmptyStep);
+        } finally {
+            DoodleTrace.endSection();
+        }
+    }
+
+    private static boolean saveToFileInternal(String filePath, DoodleData doodleData, boolean ignoreEmptyStep) {
         FileOutputStream fos = null;
         OutputStreamWriter osw = null;
         BufferedWriter bw = null;
@@ -42,7 +49,7 @@ public class DoodleDataEditorV1 extends DoodleDataEditor {
                 throw new NullPointerException("doodle data is null");
             }
             fos = new FileOutputStream(filePath, false);
-            osw = new OutputStreamWriter(fos, Charsets.UTF8);
+            osw = new OutputStreamWriter(fos, StreamUtil.UTF8);
             bw = new BufferedWriter(osw);
 
             // write doodle data with writer
@@ -63,7 +70,7 @@ public class DoodleDataEditorV1 extends DoodleDataEditor {
             if (doodleData.drawStepDatas != null) {
                 for (DoodleData.DrawStepData dsd : doodleData.drawStepDatas) {
                     if (ignoreEmptyStep && isEmptyDrawStep(dsd)) {
-                        CommonLog.d(TAG + " write ignore empty draw step in DS");
+                        DoodleLog.d(TAG + " write ignore empty draw step in DS");
                         continue;
                     }
                     // 渲染区标识
@@ -75,7 +82,7 @@ public class DoodleDataEditorV1 extends DoodleDataEditor {
             if (doodleData.drawStepDatasRedo != null) {
                 for (DoodleData.DrawStepData dsd : doodleData.drawStepDatasRedo) {
                     if (ignoreEmptyStep && isEmptyDrawStep(dsd)) {
-                        CommonLog.d(TAG + " write ignore empty draw step in DSR");
+                        DoodleLog.d(TAG + " write ignore empty draw step in DSR");
                         continue;
                     }
                     // redo 区标识
@@ -92,9 +99,9 @@ public class DoodleDataEditorV1 extends DoodleDataEditor {
         } catch (Throwable e) {
             e.printStackTrace();
         } finally {
-            IOUtil.closeQuietly(bw);
-            IOUtil.closeQuietly(osw);
-            IOUtil.closeQuietly(fos);
+            StreamUtil.closeQuietly(bw);
+            StreamUtil.closeQuietly(osw);
+            StreamUtil.closeQuietly(fos);
         }
         return false;
     }
@@ -136,71 +143,70 @@ public class DoodleDataEditorV1 extends DoodleDataEditor {
      * 解析指定文件为 DoodleData，解析失败返回 null.
      */
     public static DoodleData readFromFile(String filePath, boolean ignoreEmptyStep) {
+        DoodleDataReader.DoodleDataBuilder builder = new DoodleDataReader.DoodleDataBuilder();
+        if (read(filePath, ignoreEmptyStep, builder)) {
+            return builder.getDoodleData();
+        }
+        return null;
+    }
+
+    /**
+     * 流式解析指定文件，解析成功返回 true, 否则返回 false.
+     *
+     * @see DoodleDataReader
+     */
+    public static boolean read(String filePath, boolean ignoreEmptyStep, DoodleDataReader.Handler handler) {
         FileInputStream fis = null;
-        InputStreamReader isr = null;
-        BufferedReader br = null;
         try {
             fis = new FileInputStream(filePath);
-            isr = new InputStreamReader(fis, Charsets.UTF8);
-            br = new BufferedReader(isr);
+            // 直接扫描字节数据，解析坐标点时不为每一行创建 String
+            DoodleDataScannerV1 scanner = new DoodleDataScannerV1(fis);
 
-            String ddLine = readTrueLine(br);
-            if (!"dd".equalsIgnoreCase(ddLine)) {
+            scanner.requireTrueLine();
+            if (!scanner.lineEqualsIgnoreCase("dd")) {
                 throw new IllegalArgumentException("dd line not match for file " + filePath);
             }
-            String versionLine = readTrueLine(br);
-            int version = Integer.parseInt(versionLine);
+            scanner.requireTrueLine();
+            int version = scanner.lineToInt();
             if (version != 1) {
                 throw new IllegalArgumentException("dd file version not support " + version);
             }
 
-            DoodleData doodleData = new DoodleData();
-
-            int width = Integer.parseInt(readTrueLine(br));
-            int height = Integer.parseInt(readTrueLine(br));
-            int backgroundColor = Integer.parseInt(readTrueLine(br));
+            int width = readInt(scanner);
+            int height = readInt(scanner);
+            int backgroundColor = readInt(scanner);
             if (width <= 0 || height <= 0) {
                 throw new IllegalArgumentException("width or height error [" + width + ", " + height + "]");
             }
-            doodleData.setSize(width, height);
-            doodleData.setBackgroundColor(backgroundColor);
+            handler.onHeader(width, height, backgroundColor);
 
             // read 数据块
-            doodleData.drawStepDatas = new ArrayList<>();
-            doodleData.drawStepDatasRedo = new ArrayList<>();
             do {
-                String flagLine = readTrueLine(br);
-                if ("EOD".equalsIgnoreCase(flagLine)) {
+                scanner.requireTrueLine();
+                if (scanner.lineEqualsIgnoreCase("EOD")) {
                     // 文件已经结束
-                    return doodleData;
-                } else if ("DS".equalsIgnoreCase(flagLine)) {
+                    return true;
+                } else if (scanner.lineEqualsIgnoreCase("DS")) {
                     // 渲染区数据块
-                    DoodleData.DrawStepData drawStepData = readDrawStepData(br);
-                    if (ignoreEmptyStep && isEmptyDrawStep(drawStepData)) {
-                        CommonLog.d(TAG + " read ignore empty draw step in DS");
-                    } else {
-                        doodleData.drawStepDatas.add(drawStepData);
-                    }
-                } else if ("DSR".equalsIgnoreCase(flagLine)) {
+                    readDrawStepData(scanner, false, ignoreEmptyStep, handler);
+                } else if (scanner.lineEqualsIgnoreCase("DSR")) {
                     // redo 区数据块
-                    DoodleData.DrawStepData drawStepData = readDrawStepData(br);
-                    if (ignoreEmptyStep && isEmptyDrawStep(drawStepData)) {
-                        CommonLog.d(TAG + " read ignore empty draw step in DSR");
-                    } else {
-                        doodleData.drawStepDatasRedo.add(drawStepData);
-                    }
+                    readDrawStepData(scanner, true, ignoreEmptyStep, handler);
                 } else {
-                    throw new IllegalArgumentException("flag line error " + flagLine);
+                    throw new IllegalArgumentException("flag line error " + scanner.lineToString());
                 }
             } while (true);
         } catch (Throwable e) {
             e.printStackTrace();
         } finally {
-            IOUtil.closeQuietly(br);
-            IOUtil.closeQuietly(isr);
-            IOUtil.closeQuietly(fis);
+            StreamUtil.closeQuietly(fis);
         }
-        return null;
+        return false;
+    }
+
+    private static int readInt(DoodleDataScannerV1 scanner) throws IOException {
+        scanner.requireTrueLine();
+        return scanner.lineToInt();
     }
 
     /**
@@ -213,65 +219,66 @@ public class DoodleDataEditorV1 extends DoodleDataEditor {
         return false;
     }
 
-    private static DoodleData.DrawStepData readDrawStepData(BufferedReader br) throws IOException {
-        DoodleData.DrawStepData drawStepData = new DoodleData.DrawStepData();
-        drawStepData.points = new ArrayList<>();
-
+    /**
+     * 读取一个绘画步骤，如果需要忽略该步骤(空步骤)，不会回调任何事件.
+     */
+    private static void readDrawStepData(DoodleDataScannerV1 scanner, boolean redo, boolean ignoreEmptyStep, DoodleDataReader.Handler handler) throws IOException {
         // 读取步骤块
-        int drawStepType = Integer.parseInt(readTrueLine(br));
-        if (drawStepType == DoodleData.DRAW_STEP_TYPE_EMPTY) {
-            // 空步骤
-            drawStepData.type = DoodleData.DRAW_STEP_TYPE_EMPTY;
-        } else if (drawStepType == DoodleData.DRAW_STEP_TYPE_POINT) {
-            drawStepData.type = DoodleData.DRAW_STEP_TYPE_POINT;
-        } else if (drawStepType == DoodleData.DRAW_STEP_TYPE_SCRIBBLE) {
-            drawStepData.type = DoodleData.DRAW_STEP_TYPE_SCRIBBLE;
-        } else {
+        int drawStepType = readInt(scanner);
+        if (drawStepType != DoodleData.DRAW_STEP_TYPE_EMPTY
+                && drawStepType != DoodleData.DRAW_STEP_TYPE_POINT
+                && drawStepType != DoodleData.DRAW_STEP_TYPE_SCRIBBLE) {
             throw new IllegalArgumentException("draw step type not support " + drawStepType);
         }
+
+        final boolean ignore = ignoreEmptyStep && drawStepType == DoodleData.DRAW_STEP_TYPE_EMPTY;
+        if (ignore) {
+            DoodleLog.d(TAG + " read ignore empty draw step in " + (redo ? "DSR" : "DS"));
+        } else {
+            handler.onDrawStepBegin(redo, drawStepType);
+        }
+
         // 读取该步骤块可能包含的坐标点数据
         do {
-            String lineDrawStepPointOrEnd = readTrueLine(br);
-            assert lineDrawStepPointOrEnd != null;
-            if ("EOS".equalsIgnoreCase(lineDrawStepPointOrEnd)) {
+            scanner.requireTrueLine();
+            if (scanner.lineEqualsIgnoreCase("EOS")) {
                 // 步骤结束
                 break;
             } else {
-                // 解析为坐标点
-                String[] points = lineDrawStepPointOrEnd.split(",");
-                drawStepData.points.add(Float.valueOf(points[0]));
-                drawStepData.points.add(Float.valueOf(points[1]));
+                // 解析为坐标点, 被忽略的步骤也需要解析, 格式错误时整个文件读取失败(与之前的实现一致)
+                scanner.lineToPoint();
+                if (!ignore) {
+                    handler.onPoint(scanner.getPointX(), scanner.getPointY());
+                }
             }
         } while (true);
 
         // 读取笔刷块
-        String lineBrushTypeOrEnd = readTrueLine(br);
-        assert lineBrushTypeOrEnd != null;
-        if (!"EOB".equalsIgnoreCase(lineBrushTypeOrEnd)) {
-            DoodleData.BrushData brushData = new DoodleData.BrushData();
-            int brushType = Integer.parseInt(lineBrushTypeOrEnd);
-            if (brushType == DoodleData.BRUSH_TYPE_EMPTY) {
-                brushData.type = DoodleData.BRUSH_TYPE_EMPTY;
-            } else if (brushType == DoodleData.BRUSH_TYPE_PENCIL) {
-                brushData.type = DoodleData.BRUSH_TYPE_PENCIL;
-            } else if (brushType == DoodleData.BRUSH_TYPE_LEAVES) {
-                brushData.type = DoodleData.BRUSH_TYPE_LEAVES;
-            } else {
+        scanner.requireTrueLine();
+        if (!scanner.lineEqualsIgnoreCase("EOB")) {
+            int brushType = scanner.lineToInt();
+            if (brushType != DoodleData.BRUSH_TYPE_EMPTY
+                    && brushType != DoodleData.BRUSH_TYPE_PENCIL
+                    && brushType != DoodleData.BRUSH_TYPE_LEAVES) {
                 throw new IllegalArgumentException("brush type not support " + brushType);
             }
-            brushData.color = Integer.parseInt(readTrueLine(br));
-            brushData.size = Integer.parseInt(readTrueLine(br));
-            brushData.alpha = Integer.parseInt(readTrueLine(br));
+            int color = readInt(scanner);
+            int size = readInt(scanner);
+            int alpha = readInt(scanner);
 
             // 笔刷块结束标识
-            String brushEndFlag = readTrueLine(br);
-            if (!"EOB".equalsIgnoreCase(brushEndFlag)) {
-                throw new IllegalArgumentException("brush end flag error " + brushEndFlag);
+            scanner.requireTrueLine();
+            if (!scanner.lineEqualsIgnoreCase("EOB")) {
+                throw new IllegalArgumentException("brush end flag error " + scanner.lineToString());
+            }
+            if (!ignore) {
+                handler.onBrush(brushType, color, size, alpha);
             }
-            drawStepData.brushData = brushData;
         }
 
-        return drawStepData;
+        if (!ignore) {
+            handler.onDrawStepEnd();
+        }
     }
 
-}
\ No newline at end of file
+}
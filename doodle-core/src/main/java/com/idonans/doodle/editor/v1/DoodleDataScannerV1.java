@@ -0,0 +1,394 @@
+package com.idonans.doodle.editor.v1;
+
+import com.idonans.doodle.util.StreamUtil;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 版本 1 dd 文件的行扫描器. 直接在字节缓冲区中查找行并解析整数和坐标点，不为每一行创建 String.
+ * 行的切分，注释行，空行以及行两端空白字符的处理与 DoodleDataEditor#readTrueLine 一致.
+ * 对于不常见的写法(如非 ASCII 字符，科学计数法的极端值等)，回退到 String 的解析方式，保证解析结果完全一致.
+ * Created by pengji on 16-7-25.
+ */
+final class DoodleDataScannerV1 {
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+            1e21, 1e22
+    };
+
+    // 在 double 中可以精确表示的最大整数
+    private static final long MANTISSA_MAX = 1L << 53;
+
+    private final InputStream mInputStream;
+    private byte[] mBuffer = new byte[16 * 1024];
+    private int mPosition;
+    private int mLimit;
+    private boolean mEof;
+    // 上一行以 \r 结束，如果紧接着是 \n 需要跳过
+    private boolean mSkipLf;
+
+    // 当前行的内容 [mLineStart, mLineEnd), 已经去除两端的空白字符
+    private int mLineStart;
+    private int mLineEnd;
+    // 当前行是否只包含 ASCII 字符
+    private boolean mLineAscii;
+
+    // 最近一次解析的坐标点
+    private float mPointX;
+    private float mPointY;
+
+    DoodleDataScannerV1(InputStream inputStream) {
+        mInputStream = inputStream;
+    }
+
+    /**
+     * 读取下一行有效数据，排除注释行，空行，和行两端的空白字符. 如果已经读至文件末尾返回 false.
+     */
+    boolean nextTrueLine() throws IOException {
+        do {
+            if (!nextLine()) {
+                return false;
+            }
+
+            int start = mLineStart;
+            int end = mLineEnd;
+            while (start < end && (mBuffer[start] & 0xFF) <= ' ') {
+                start++;
+            }
+            while (end > start && (mBuffer[end - 1] & 0xFF) <= ' ') {
+                end--;
+            }
+            if (start == end) {
+                // 跳过空行
+                continue;
+            }
+            if (mBuffer[start] == '#') {
+                // 跳过注释行
+                continue;
+            }
+
+            boolean ascii = true;
+            for (int i = start; i < end; i++) {
+                if (mBuffer[i] < 0) {
+                    ascii = false;
+                    break;
+                }
+            }
+
+            mLineStart = start;
+            mLineEnd = end;
+            mLineAscii = ascii;
+            return true;
+        } while (true);
+    }
+
+    /**
+     * 读取下一行有效数据，如果已经读至文件末尾，抛出 EOFException
+     */
+    void requireTrueLine() throws IOException {
+        if (!nextTrueLine()) {
+            throw new EOFException();
+        }
+    }
+
+    /**
+     * 读取原始的一行，行结束符可以是 \n, \r 或者 \r\n
+     */
+    private boolean nextLine() throws IOException {
+        if (mSkipLf) {
+            if (mPosition >= mLimit) {
+                fill(mPosition);
+            }
+            if (mPosition < mLimit && mBuffer[mPosition] == '\n') {
+                mPosition++;
+            }
+            mSkipLf = false;
+        }
+
+        int lineStart = mPosition;
+        int index = mPosition;
+        do {
+            while (index < mLimit) {
+                byte b = mBuffer[index];
+                if (b == '\n' || b == '\r') {
+                    mLineStart = lineStart;
+                    mLineEnd = index;
+                    mPosition = index + 1;
+                    mSkipLf = b == '\r';
+                    return true;
+                }
+                index++;
+            }
+
+            if (mEof) {
+                if (lineStart == mLimit) {
+                    return false;
+                }
+                // 最后一行没有行结束符
+                mLineStart = lineStart;
+                mLineEnd = mLimit;
+                mPosition = mLimit;
+                return true;
+            }
+
+            int moved = fill(lineStart);
+            lineStart -= moved;
+            index -= moved;
+        } while (true);
+    }
+
+    /**
+     * 保留从 keepFrom 开始的数据并读取更多的数据, 返回数据向前移动的距离
+     */
+    private int fill(int keepFrom) throws IOException {
+        int keep = mLimit - keepFrom;
+        if (keepFrom > 0) {
+            System.arraycopy(mBuffer, keepFrom, mBuffer, 0, keep);
+        } else if (keep == mBuffer.length) {
+            // 一行的内容超过了缓冲区的大小
+            byte[] buffer = new byte[mBuffer.length * 2];
+            System.arraycopy(mBuffer, 0, buffer, 0, keep);
+            mBuffer = buffer;
+        }
+        mPosition -= keepFrom;
+        mLimit = keep;
+
+        int read = mInputStream.read(mBuffer, mLimit, mBuffer.length - mLimit);
+        if (read < 0) {
+            mEof = true;
+        } else {
+            mLimit += read;
+        }
+        return keepFrom;
+    }
+
+    /**
+     * 当前行转换为 String, 用于回退到原始的解析方式
+     */
+    String lineToString() {
+        return new String(mBuffer, mLineStart, mLineEnd - mLineStart, StreamUtil.UTF8);
+    }
+
+    /**
+     * 当前行是否与指定的 ASCII 字符串相同(忽略大小写)
+     */
+    boolean lineEqualsIgnoreCase(String ascii) {
+        if (!mLineAscii) {
+            return ascii.equalsIgnoreCase(lineToString());
+        }
+
+        int length = mLineEnd - mLineStart;
+        if (length != ascii.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            int a = mBuffer[mLineStart + i];
+            int b = ascii.charAt(i);
+            if (a == b) {
+                continue;
+            }
+            if (a >= 'a' && a <= 'z') {
+                a -= 'a' - 'A';
+            }
+            if (b >= 'a' && b <= 'z') {
+                b -= 'a' - 'A';
+            }
+            if (a != b) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 将当前行解析为整数, 结果与 Integer#parseInt 相同
+     */
+    int lineToInt() {
+        if (mLineAscii) {
+            int index = mLineStart;
+            boolean negative = false;
+            byte first = mBuffer[index];
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                index++;
+            }
+            // 最多 9 位数字不会溢出
+            if (index < mLineEnd && mLineEnd - index <= 9) {
+                int value = 0;
+                for (; index < mLineEnd; index++) {
+                    int digit = mBuffer[index] - '0';
+                    if (digit < 0 || digit > 9) {
+                        break;
+                    }
+                    value = value * 10 + digit;
+                }
+                if (index == mLineEnd) {
+                    return negative ? -value : value;
+                }
+            }
+        }
+        return Integer.parseInt(lineToString());
+    }
+
+    /**
+     * 将当前行解析为坐标点 (两个以半角逗号隔开的浮点数), 结果与 String#split 和 Float#valueOf 的组合相同.
+     *
+     * @see #getPointX()
+     * @see #getPointY()
+     */
+    void lineToPoint() {
+        if (mLineAscii) {
+            int comma = indexOf(',', mLineStart, mLineEnd);
+            if (comma > mLineStart) {
+                int end = indexOf(',', comma + 1, mLineEnd);
+                if (end < 0) {
+                    end = mLineEnd;
+                }
+                if (end > comma + 1
+                        && parseFloat(mLineStart, comma)) {
+                    float x = mPointY;
+                    if (parseFloat(comma + 1, end)) {
+                        mPointX = x;
+                        return;
+                    }
+                }
+            }
+        }
+
+        String[] points = lineToString().split(",");
+        mPointX = Float.valueOf(points[0]);
+        mPointY = Float.valueOf(points[1]);
+    }
+
+    float getPointX() {
+        return mPointX;
+    }
+
+    float getPointY() {
+        return mPointY;
+    }
+
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (mBuffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 解析 [start, end) 中的十进制浮点数并保存到 mPointY, 只处理可以保证与 Float#parseFloat 结果相同的写法,
+     * 无法处理时返回 false.
+     */
+    private boolean parseFloat(int start, int end) {
+        int index = start;
+        boolean negative = false;
+        byte first = mBuffer[index];
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            index++;
+        }
+
+        long mantissa = 0;
+        int digits = 0; // 有效数字的个数(不含前导 0)
+        int fractionDigits = 0;
+        boolean foundDigit = false;
+        boolean inFraction = false;
+        for (; index < end; index++) {
+            byte b = mBuffer[index];
+            if (b >= '0' && b <= '9') {
+                foundDigit = true;
+                if (mantissa == 0 && b == '0') {
+                    // 前导 0
+                    if (inFraction) {
+                        fractionDigits++;
+                    }
+                    continue;
+                }
+                if (digits >= 18) {
+                    return false;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (inFraction) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && !inFraction) {
+                inFraction = true;
+            } else {
+                break;
+            }
+        }
+        if (!foundDigit) {
+            return false;
+        }
+
+        int exponent = 0;
+        if (index < end) {
+            byte b = mBuffer[index];
+            if (b != 'e' && b != 'E') {
+                return false;
+            }
+            index++;
+            boolean exponentNegative = false;
+            if (index < end && (mBuffer[index] == '-' || mBuffer[index] == '+')) {
+                exponentNegative = mBuffer[index] == '-';
+                index++;
+            }
+            if (index >= end || end - index > 3) {
+                return false;
+            }
+            for (; index < end; index++) {
+                int digit = mBuffer[index] - '0';
+                if (digit < 0 || digit > 9) {
+                    return false;
+                }
+                exponent = exponent * 10 + digit;
+            }
+            if (exponentNegative) {
+                exponent = -exponent;
+            }
+        }
+
+        if (mantissa == 0) {
+            mPointY = negative ? -0f : 0f;
+            return true;
+        }
+        if (mantissa > MANTISSA_MAX) {
+            return false;
+        }
+
+        // mantissa 和 10 的幂都可以精确表示为 double, 一次乘除运算得到的是正确舍入的 double
+        int exponent10 = exponent - fractionDigits;
+        double value;
+        if (exponent10 >= 0 && exponent10 < POW10.length) {
+            value = mantissa * POW10[exponent10];
+        } else if (exponent10 < 0 && -exponent10 < POW10.length) {
+            value = mantissa / POW10[-exponent10];
+        } else {
+            return false;
+        }
+        if (value > 1e30 || value < 1e-30) {
+            return false;
+        }
+
+        // 从 double 再舍入为 float, 只有当 double 恰好落在两个 float 的中点上时才可能出现二次舍入的误差
+        float result = (float) value;
+        if (result != value) {
+            float neighbour = Math.nextAfter(result, value);
+            double middle = ((double) result + (double) neighbour) / 2;
+            if (middle == value) {
+                return false;
+            }
+        }
+
+        mPointY = negative ? -result : result;
+        return true;
+    }
+
+}
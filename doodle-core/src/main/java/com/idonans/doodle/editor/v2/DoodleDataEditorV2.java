@@ -0,0 +1,458 @@
+package com.idonans.doodle.editor.v2;
+
+import com.idonans.doodle.DoodleData;
+import com.idonans.doodle.editor.DoodleDataEditor;
+import com.idonans.doodle.editor.DoodleDataReader;
+import com.idonans.doodle.util.DoodleLog;
+import com.idonans.doodle.util.DoodleTrace;
+import com.idonans.doodle.util.StreamUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * doodle data editor v2, 二进制格式. 坐标点按照固定精度量化后使用 zig-zag varint 增量编码.
+ * 格式细节见 DoodleData.dd.README
+ * Created by pengji on 16-7-20.
+ */
+public class DoodleDataEditorV2 extends DoodleDataEditor {
+
+    private static final String TAG = "DoodleDataEditorV2";
+
+    /**
+     * 坐标点的量化精度, 坐标值乘以该值后取整保存 (保留两位小数)
+     */
+    public static final int POINT_SCALE = 100;
+
+    /**
+     * 渲染区数据块
+     */
+    static final int AREA_DS = 1;
+    /**
+     * redo 区数据块
+     */
+    static final int AREA_DSR = 2;
+    /**
+     * 文件结束标志
+     */
+    static final int AREA_EOD = 0;
+
+    /**
+     * 步骤索引表中每一项的长度: 步骤偏移(int), 坐标点数量(int), 数据块从属区域(byte), 步骤类型(byte)
+     */
+    static final int INDEX_ENTRY_SIZE = 10;
+    /**
+     * 文件末尾的索引标识, 之前的 4 个字节是步骤索引表的偏移
+     */
+    static final byte[] INDEX_MAGIC = {'D', 'D', 'I', 'X'};
+
+    /**
+     * 将 DoodleData 保存到指定文件内，保存成功，返回 true, 否则返回 false. 忽略空步骤
+     */
+    public static boolean saveToFile(String filePath, DoodleData doodleData) {
+        return saveToFile(filePath, doodleData, true);
+    }
+
+    /**
+     * 将 DoodleData 保存到指定文件内，保存成功，返回 true, 否则返回 false.
+     */
+    public static boolean saveToFile(String filePath, DoodleData doodleData, boolean ignoreEmptyStep) {
+        DoodleTrace.beginSection("DoodleDataEditorV2.saveToFile");
+        try {
+            return saveToFileInternal(filePath, doodleData, ignoreEmptyStep);
+        } finally {
+            DoodleTrace.endSection();
+        }
+    }
+
+    private static boolean saveToFileInternal(String filePath, DoodleData doodleData, boolean ignoreEmptyStep) {
+        FileOutputStream fos = null;
+        BufferedOutputStream bos = null;
+        DataOutputStream dos = null;
+        try {
+            if (doodleData == null) {
+                throw new NullPointerException("doodle data is null");
+            }
+            // 步骤索引表, 写在文件末尾, 用于随机访问
+            ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+            DataOutputStream indexDos = new DataOutputStream(indexBytes);
+
+            fos = new FileOutputStream(filePath, false);
+            bos = new BufferedOutputStream(fos);
+            dos = new DataOutputStream(bos);
+
+            // 固定头 dd 和版本行, 保持与文本格式一致，使得 DoodleDataEditor#getVersion 可以识别
+            dos.write(HEADER);
+
+            dos.writeInt(doodleData.width);
+            dos.writeInt(doodleData.height);
+            dos.writeInt(doodleData.backgroundColor);
+            writeVarInt(POINT_SCALE, dos);
+
+            // 笔刷表, 相同的笔刷只保存一次
+            ArrayList<DoodleData.BrushData> brushTable = new ArrayList<>();
+            HashMap<DoodleData.BrushData, Integer> brushIndexes = new HashMap<>();
+            collectBrushes(doodleData.drawStepDatas, ignoreEmptyStep, brushTable, brushIndexes);
+            collectBrushes(doodleData.drawStepDatasRedo, ignoreEmptyStep, brushTable, brushIndexes);
+            writeVarInt(brushTable.size(), dos);
+            for (DoodleData.BrushData brushData : brushTable) {
+                dos.writeByte(brushData.type);
+                dos.writeInt(brushData.color);
+                writeVarInt(brushData.size, dos);
+                dos.writeByte(brushData.alpha);
+            }
+
+            // write 渲染区数据块
+            if (doodleData.drawStepDatas != null) {
+                for (DoodleData.DrawStepData dsd : doodleData.drawStepDatas) {
+                    if (ignoreEmptyStep && isEmptyDrawStep(dsd)) {
+                        DoodleLog.d(TAG + " write ignore empty draw step in DS");
+                        continue;
+                    }
+                    writeIndexEntry(dos.size(), AREA_DS, dsd, indexDos);
+                    dos.writeByte(AREA_DS);
+                    writeDrawStepData(dsd, brushIndexes, dos);
+                }
+            }
+            // write redo 区数据块
+            if (doodleData.drawStepDatasRedo != null) {
+                for (DoodleData.DrawStepData dsd : doodleData.drawStepDatasRedo) {
+                    if (ignoreEmptyStep && isEmptyDrawStep(dsd)) {
+                        DoodleLog.d(TAG + " write ignore empty draw step in DSR");
+                        continue;
+                    }
+                    writeIndexEntry(dos.size(), AREA_DSR, dsd, indexDos);
+                    dos.writeByte(AREA_DSR);
+                    writeDrawStepData(dsd, brushIndexes, dos);
+                }
+            }
+
+            // 文件结束
+            dos.writeByte(AREA_EOD);
+
+            // 步骤索引表
+            int indexOffset = dos.size();
+            dos.writeInt(indexDos.size() / INDEX_ENTRY_SIZE);
+            indexBytes.writeTo(dos);
+            dos.writeInt(indexOffset);
+            dos.write(INDEX_MAGIC);
+
+            dos.flush();
+            return true;
+        } catch (Throwable e) {
+            e.printStackTrace();
+        } finally {
+            StreamUtil.closeQuietly(dos);
+            StreamUtil.closeQuietly(bos);
+            StreamUtil.closeQuietly(fos);
+        }
+        return false;
+    }
+
+    private static void collectBrushes(ArrayList<DoodleData.DrawStepData> drawStepDatas, boolean ignoreEmptyStep,
+                                       ArrayList<DoodleData.BrushData> brushTable, HashMap<DoodleData.BrushData, Integer> brushIndexes) {
+        if (drawStepDatas == null) {
+            return;
+        }
+        for (DoodleData.DrawStepData dsd : drawStepDatas) {
+            if (ignoreEmptyStep && isEmptyDrawStep(dsd)) {
+                continue;
+            }
+            if (dsd.brushData != null && !brushIndexes.containsKey(dsd.brushData)) {
+                brushIndexes.put(dsd.brushData, brushTable.size());
+                brushTable.add(dsd.brushData);
+            }
+        }
+    }
+
+    private static void writeIndexEntry(int offset, int area, DoodleData.DrawStepData dsd, DataOutputStream indexDos) throws IOException {
+        indexDos.writeInt(offset);
+        indexDos.writeInt(dsd.points == null ? 0 : dsd.points.size() / 2);
+        indexDos.writeByte(area);
+        indexDos.writeByte(dsd.type);
+    }
+
+    private static void writeDrawStepData(DoodleData.DrawStepData dsd, HashMap<DoodleData.BrushData, Integer> brushIndexes, DataOutputStream dos) throws IOException {
+        dos.writeByte(dsd.type);
+        // 笔刷索引, 0 表示没有笔刷
+        if (dsd.brushData == null) {
+            writeVarInt(0, dos);
+        } else {
+            writeVarInt(brushIndexes.get(dsd.brushData) + 1, dos);
+        }
+
+        int size = dsd.points == null ? 0 : dsd.points.size();
+        if (size % 2 != 0) {
+            throw new IllegalArgumentException("point size not match");
+        }
+        writeVarInt(size / 2, dos);
+        // 第一个点保存量化后的绝对值，之后的点保存与前一个点的差值
+        int preX = 0;
+        int preY = 0;
+        for (int i = 0; i < size; i += 2) {
+            int x = quantize(dsd.points.get(i));
+            int y = quantize(dsd.points.get(i + 1));
+            writeVarInt(zigZagEncode(x - preX), dos);
+            writeVarInt(zigZagEncode(y - preY), dos);
+            preX = x;
+            preY = y;
+        }
+    }
+
+    /**
+     * 解析指定文件为 DoodleData，解析失败返回 null. 忽略空步骤
+     */
+    public static DoodleData readFromFile(String filePath) {
+        return readFromFile(filePath, true);
+    }
+
+    /**
+     * 解析指定文件为 DoodleData，解析失败返回 null.
+     */
+    public static DoodleData readFromFile(String filePath, boolean ignoreEmptyStep) {
+        DoodleDataReader.DoodleDataBuilder builder = new DoodleDataReader.DoodleDataBuilder();
+        if (read(filePath, ignoreEmptyStep, builder)) {
+            return builder.getDoodleData();
+        }
+        return null;
+    }
+
+    /**
+     * 流式解析指定文件，解析成功返回 true, 否则返回 false.
+     *
+     * @see DoodleDataReader
+     */
+    public static boolean read(String filePath, boolean ignoreEmptyStep, DoodleDataReader.Handler handler) {
+        FileInputStream fis = null;
+        BufferedInputStream bis = null;
+        DataInputStream dis = null;
+        try {
+            fis = new FileInputStream(filePath);
+            bis = new BufferedInputStream(fis);
+            dis = new DataInputStream(bis);
+
+            String ddLine = readHeaderLine(dis);
+            if (!"dd".equalsIgnoreCase(ddLine)) {
+                throw new IllegalArgumentException("dd line not match for file " + filePath);
+            }
+            int version = Integer.parseInt(readHeaderLine(dis));
+            if (version != 2) {
+                throw new IllegalArgumentException("dd file version not support " + version);
+            }
+
+            int width = dis.readInt();
+            int height = dis.readInt();
+            int backgroundColor = dis.readInt();
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("width or height error [" + width + ", " + height + "]");
+            }
+            int pointScale = readVarInt(dis);
+            if (pointScale <= 0) {
+                throw new IllegalArgumentException("point scale error " + pointScale);
+            }
+            handler.onHeader(width, height, backgroundColor);
+
+            // 读取笔刷表
+            int brushCount = readVarInt(dis);
+            DoodleData.BrushData[] brushTable = new DoodleData.BrushData[brushCount];
+            for (int i = 0; i < brushCount; i++) {
+                DoodleData.BrushData brushData = new DoodleData.BrushData();
+                int brushType = dis.readUnsignedByte();
+                if (brushType == DoodleData.BRUSH_TYPE_EMPTY) {
+                    brushData.type = DoodleData.BRUSH_TYPE_EMPTY;
+                } else if (brushType == DoodleData.BRUSH_TYPE_PENCIL) {
+                    brushData.type = DoodleData.BRUSH_TYPE_PENCIL;
+                } else if (brushType == DoodleData.BRUSH_TYPE_LEAVES) {
+                    brushData.type = DoodleData.BRUSH_TYPE_LEAVES;
+                } else {
+                    throw new IllegalArgumentException("brush type not support " + brushType);
+                }
+                brushData.color = dis.readInt();
+                brushData.size = readVarInt(dis);
+                brushData.alpha = dis.readUnsignedByte();
+                brushTable[i] = brushData;
+            }
+
+            // read 数据块
+            do {
+                int area = dis.readUnsignedByte();
+                if (area == AREA_EOD) {
+                    // 文件已经结束
+                    return true;
+                } else if (area == AREA_DS) {
+                    // 渲染区数据块
+                    readDrawStepData(dis, false, ignoreEmptyStep, brushTable, pointScale, handler);
+                } else if (area == AREA_DSR) {
+                    // redo 区数据块
+                    readDrawStepData(dis, true, ignoreEmptyStep, brushTable, pointScale, handler);
+                } else {
+                    throw new IllegalArgumentException("area flag error " + area);
+                }
+            } while (true);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        } finally {
+            StreamUtil.closeQuietly(dis);
+            StreamUtil.closeQuietly(bis);
+            StreamUtil.closeQuietly(fis);
+        }
+        return false;
+    }
+
+    /**
+     * 读取一个绘画步骤，如果需要忽略该步骤(空步骤)，不会回调任何事件.
+     */
+    private static void readDrawStepData(DataInputStream dis, boolean redo, boolean ignoreEmptyStep,
+                                         DoodleData.BrushData[] brushTable, int pointScale,
+                                         DoodleDataReader.Handler handler) throws IOException {
+        int drawStepType = dis.readUnsignedByte();
+        if (drawStepType != DoodleData.DRAW_STEP_TYPE_EMPTY
+                && drawStepType != DoodleData.DRAW_STEP_TYPE_POINT
+                && drawStepType != DoodleData.DRAW_STEP_TYPE_SCRIBBLE) {
+            throw new IllegalArgumentException("draw step type not support " + drawStepType);
+        }
+
+        int brushIndex = readVarInt(dis);
+        if (brushIndex > brushTable.length) {
+            throw new IllegalArgumentException("brush index out of range " + brushIndex);
+        }
+
+        final boolean ignore = ignoreEmptyStep && drawStepType == DoodleData.DRAW_STEP_TYPE_EMPTY;
+        if (ignore) {
+            DoodleLog.d(TAG + " read ignore empty draw step in " + (redo ? "DSR" : "DS"));
+        } else {
+            handler.onDrawStepBegin(redo, drawStepType);
+        }
+
+        int pointCount = readVarInt(dis);
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < pointCount; i++) {
+            x += zigZagDecode(readVarInt(dis));
+            y += zigZagDecode(readVarInt(dis));
+            if (!ignore) {
+                handler.onPoint(dequantize(x, pointScale), dequantize(y, pointScale));
+            }
+        }
+
+        if (!ignore) {
+            if (brushIndex > 0) {
+                DoodleData.BrushData brushData = brushTable[brushIndex - 1];
+                handler.onBrush(brushData.type, brushData.color, brushData.size, brushData.alpha);
+            }
+            handler.onDrawStepEnd();
+        }
+    }
+
+    /**
+     * 校验指定绘画步骤是否是一个空步骤
+     */
+    private static boolean isEmptyDrawStep(DoodleData.DrawStepData drawStepData) {
+        if (drawStepData == null || drawStepData.type == DoodleData.DRAW_STEP_TYPE_EMPTY) {
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 文件头，与版本 1 的前两行格式相同
+     */
+    static final byte[] HEADER = {'d', 'd', '\n', '2', '\n'};
+
+    /**
+     * 读取文件头中的一行文本(不包含换行符), 二进制格式的各个版本共用
+     */
+    public static String readHeaderLine(InputStream is) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        do {
+            int b = is.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            if (b == '\n') {
+                String line = builder.toString().trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    // 跳过空行和注释行
+                    builder.setLength(0);
+                    continue;
+                }
+                return line;
+            }
+            builder.append((char) b);
+        } while (true);
+    }
+
+    /**
+     * 按照 POINT_SCALE 量化坐标值
+     */
+    public static int quantize(float value) {
+        double scaled = Math.rint((double) value * POINT_SCALE);
+        if (Double.isNaN(scaled) || scaled > Integer.MAX_VALUE / 2 || scaled < Integer.MIN_VALUE / 2) {
+            throw new IllegalArgumentException("point value out of range " + value);
+        }
+        return (int) scaled;
+    }
+
+    public static float dequantize(int value, int pointScale) {
+        return (float) ((double) value / pointScale);
+    }
+
+    public static int zigZagEncode(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    public static int zigZagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * 写入一个无符号的 varint (每字节 7 位, 最高位表示后面是否还有字节)
+     */
+    public static void writeVarInt(int value, OutputStream os) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            os.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        os.write(value);
+    }
+
+    public static int readVarInt(InputStream is) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = is.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint too long");
+    }
+
+    static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = buffer.get() & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("varint too long");
+    }
+
+}
@@ -0,0 +1,275 @@
+package com.idonans.doodle.editor.v2;
+
+import com.idonans.doodle.DoodleData;
+import com.idonans.doodle.editor.DoodleDataReader;
+import com.idonans.doodle.util.StreamUtil;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 使用内存映射的方式读取版本 2 的 dd 文件, 通过文件末尾的步骤索引表可以直接解码任意一个绘画步骤，
+ * 不需要读取文件的其余部分. 没有索引表的文件在打开时会扫描一次以构建索引.
+ * Created by pengji on 16-7-22.
+ */
+public class DoodleDataMappedReader {
+
+    private final ByteBuffer mBuffer;
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int mBackgroundColor;
+    private final int mPointScale;
+    private final DoodleData.BrushData[] mBrushTable;
+
+    // 步骤索引表, 每一项的格式见 DoodleDataEditorV2#INDEX_ENTRY_SIZE
+    private final ByteBuffer mIndex;
+    private final int mDrawStepCount;
+
+    /**
+     * 打开指定的 dd 文件, 如果文件不是版本 2 或者解析出错，返回 null.
+     */
+    public static DoodleDataMappedReader open(String filePath) {
+        RandomAccessFile raf = null;
+        FileChannel channel = null;
+        try {
+            raf = new RandomAccessFile(filePath, "r");
+            channel = raf.getChannel();
+            // 映射建立之后，关闭 channel 不会影响映射的内容
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new DoodleDataMappedReader(buffer);
+        } catch (Throwable e) {
+            e.printStackTrace();
+        } finally {
+            StreamUtil.closeQuietly(channel);
+            StreamUtil.closeQuietly(raf);
+        }
+        return null;
+    }
+
+    private DoodleDataMappedReader(ByteBuffer buffer) {
+        mBuffer = buffer;
+
+        ByteBuffer reader = buffer.duplicate();
+        String ddLine = readHeaderLine(reader);
+        if (!"dd".equalsIgnoreCase(ddLine)) {
+            throw new IllegalArgumentException("dd line not match");
+        }
+        int version = Integer.parseInt(readHeaderLine(reader));
+        if (version != 2) {
+            throw new IllegalArgumentException("dd file version not support " + version);
+        }
+
+        mWidth = reader.getInt();
+        mHeight = reader.getInt();
+        mBackgroundColor = reader.getInt();
+        if (mWidth <= 0 || mHeight <= 0) {
+            throw new IllegalArgumentException("width or height error [" + mWidth + ", " + mHeight + "]");
+        }
+        mPointScale = DoodleDataEditorV2.readVarInt(reader);
+        if (mPointScale <= 0) {
+            throw new IllegalArgumentException("point scale error " + mPointScale);
+        }
+
+        int brushCount = DoodleDataEditorV2.readVarInt(reader);
+        mBrushTable = new DoodleData.BrushData[brushCount];
+        for (int i = 0; i < brushCount; i++) {
+            DoodleData.BrushData brushData = new DoodleData.BrushData();
+            brushData.type = reader.get() & 0xFF;
+            brushData.color = reader.getInt();
+            brushData.size = DoodleDataEditorV2.readVarInt(reader);
+            brushData.alpha = reader.get() & 0xFF;
+            mBrushTable[i] = brushData;
+        }
+
+        ByteBuffer index = readIndex(buffer);
+        if (index == null) {
+            // 没有索引表，扫描一次构建索引
+            index = buildIndex(reader);
+        }
+        mIndex = index;
+        mDrawStepCount = index.limit() / DoodleDataEditorV2.INDEX_ENTRY_SIZE;
+    }
+
+    /**
+     * 读取文件末尾的步骤索引表, 如果没有索引表返回 null
+     */
+    private static ByteBuffer readIndex(ByteBuffer buffer) {
+        final int size = buffer.limit();
+        final byte[] magic = DoodleDataEditorV2.INDEX_MAGIC;
+        if (size < magic.length + 4) {
+            return null;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (buffer.get(size - magic.length + i) != magic[i]) {
+                return null;
+            }
+        }
+
+        // 索引表的位置和长度来自文件内容, 使用 long 计算，避免损坏的文件使得计算结果溢出并通过边界检查
+        int indexOffset = buffer.getInt(size - magic.length - 4);
+        if (indexOffset < 0 || indexOffset + 4L > size) {
+            throw new IllegalArgumentException("index offset error " + indexOffset);
+        }
+        int count = buffer.getInt(indexOffset);
+        int indexStart = indexOffset + 4;
+        long indexEnd = indexStart + (long) count * DoodleDataEditorV2.INDEX_ENTRY_SIZE;
+        if (count < 0 || indexEnd > size - magic.length - 4) {
+            throw new IllegalArgumentException("index size error " + count);
+        }
+
+        ByteBuffer index = buffer.duplicate();
+        index.position(indexStart);
+        index.limit((int) indexEnd);
+        return index.slice();
+    }
+
+    /**
+     * 从第一个数据块开始扫描至文件结束标志，构建步骤索引表
+     */
+    private static ByteBuffer buildIndex(ByteBuffer reader) {
+        ByteBuffer index = ByteBuffer.allocate(DoodleDataEditorV2.INDEX_ENTRY_SIZE * 64);
+        do {
+            int offset = reader.position();
+            int area = reader.get() & 0xFF;
+            if (area == DoodleDataEditorV2.AREA_EOD) {
+                break;
+            }
+            int drawStepType = reader.get() & 0xFF;
+            // 笔刷索引
+            DoodleDataEditorV2.readVarInt(reader);
+            int pointCount = DoodleDataEditorV2.readVarInt(reader);
+            for (int i = 0; i < pointCount * 2; i++) {
+                DoodleDataEditorV2.readVarInt(reader);
+            }
+
+            if (index.remaining() < DoodleDataEditorV2.INDEX_ENTRY_SIZE) {
+                ByteBuffer larger = ByteBuffer.allocate(index.capacity() * 2);
+                index.flip();
+                larger.put(index);
+                index = larger;
+            }
+            index.putInt(offset);
+            index.putInt(pointCount);
+            index.put((byte) area);
+            index.put((byte) drawStepType);
+        } while (true);
+        index.flip();
+        return index;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getBackgroundColor() {
+        return mBackgroundColor;
+    }
+
+    /**
+     * 文件中的绘画步骤数量(包含渲染区和 redo 区)
+     */
+    public int getDrawStepCount() {
+        return mDrawStepCount;
+    }
+
+    /**
+     * 指定位置的绘画步骤是否属于 redo 区
+     */
+    public boolean isDrawStepRedo(int index) {
+        return mIndex.get(index * DoodleDataEditorV2.INDEX_ENTRY_SIZE + 8) == DoodleDataEditorV2.AREA_DSR;
+    }
+
+    public int getDrawStepType(int index) {
+        return mIndex.get(index * DoodleDataEditorV2.INDEX_ENTRY_SIZE + 9) & 0xFF;
+    }
+
+    /**
+     * 指定位置的绘画步骤包含的坐标点数量
+     */
+    public int getPointCount(int index) {
+        return mIndex.getInt(index * DoodleDataEditorV2.INDEX_ENTRY_SIZE + 4);
+    }
+
+    /**
+     * 回调文件头
+     */
+    public void readHeader(DoodleDataReader.Handler handler) {
+        handler.onHeader(mWidth, mHeight, mBackgroundColor);
+    }
+
+    /**
+     * 解码指定位置的绘画步骤, 事件顺序与 DoodleDataReader 相同. 解码成功返回 true, 否则返回 false.
+     */
+    public boolean read(int index, DoodleDataReader.Handler handler) {
+        try {
+            if (index < 0 || index >= mDrawStepCount) {
+                throw new IndexOutOfBoundsException("index " + index + ", draw step count " + mDrawStepCount);
+            }
+
+            ByteBuffer reader = mBuffer.duplicate();
+            reader.position(mIndex.getInt(index * DoodleDataEditorV2.INDEX_ENTRY_SIZE));
+
+            int area = reader.get() & 0xFF;
+            if (area != DoodleDataEditorV2.AREA_DS && area != DoodleDataEditorV2.AREA_DSR) {
+                throw new IllegalArgumentException("area flag error " + area);
+            }
+            int drawStepType = reader.get() & 0xFF;
+            if (drawStepType != DoodleData.DRAW_STEP_TYPE_EMPTY
+                    && drawStepType != DoodleData.DRAW_STEP_TYPE_POINT
+                    && drawStepType != DoodleData.DRAW_STEP_TYPE_SCRIBBLE) {
+                throw new IllegalArgumentException("draw step type not support " + drawStepType);
+            }
+            int brushIndex = DoodleDataEditorV2.readVarInt(reader);
+            if (brushIndex > mBrushTable.length) {
+                throw new IllegalArgumentException("brush index out of range " + brushIndex);
+            }
+
+            handler.onDrawStepBegin(area == DoodleDataEditorV2.AREA_DSR, drawStepType);
+            int pointCount = DoodleDataEditorV2.readVarInt(reader);
+            int x = 0;
+            int y = 0;
+            for (int i = 0; i < pointCount; i++) {
+                x += DoodleDataEditorV2.zigZagDecode(DoodleDataEditorV2.readVarInt(reader));
+                y += DoodleDataEditorV2.zigZagDecode(DoodleDataEditorV2.readVarInt(reader));
+                handler.onPoint(DoodleDataEditorV2.dequantize(x, mPointScale), DoodleDataEditorV2.dequantize(y, mPointScale));
+            }
+            if (brushIndex > 0) {
+                DoodleData.BrushData brushData = mBrushTable[brushIndex - 1];
+                handler.onBrush(brushData.type, brushData.color, brushData.size, brushData.alpha);
+            }
+            handler.onDrawStepEnd();
+            return true;
+        } catch (Throwable e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    /**
+     * 读取文件头中的一行文本(不包含换行符)
+     */
+    private static String readHeaderLine(ByteBuffer reader) {
+        StringBuilder builder = new StringBuilder();
+        do {
+            int b = reader.get();
+            if (b == '\n') {
+                String line = builder.toString().trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    // 跳过空行和注释行
+                    builder.setLength(0);
+                    continue;
+                }
+                return line;
+            }
+            builder.append((char) b);
+        } while (true);
+    }
+
+}
@@ -0,0 +1,360 @@
+package com.idonans.doodle.editor.v3;
+
+import com.idonans.doodle.DoodleData;
+import com.idonans.doodle.PointBuffer;
+import com.idonans.doodle.editor.DoodleDataEditor;
+import com.idonans.doodle.editor.DoodleDataReader;
+import com.idonans.doodle.editor.v2.DoodleDataEditorV2;
+import com.idonans.doodle.util.DoodleLog;
+import com.idonans.doodle.util.StreamUtil;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+/**
+ * doodle data editor v3, 追加写入的日志格式(journal). 文件由一系列记录组成，每次保存只在文件末尾追加新增的绘画步骤
+ * 和 undo/redo 游标记录，写入方式见 DoodleDataJournal. 坐标点的编码方式与版本 2 相同.
+ * 格式细节见 DoodleData.dd.README
+ * Created by pengji on 16-7-26.
+ */
+public class DoodleDataEditorV3 extends DoodleDataEditor {
+
+    private static final String TAG = "DoodleDataEditorV3";
+
+    /**
+     * 文件头，与版本 1 的前两行格式相同
+     */
+    static final byte[] HEADER = {'d', 'd', '\n', '3', '\n'};
+
+    /**
+     * 在绘画历史的末尾追加一个绘画步骤
+     */
+    static final int RECORD_STEP = 1;
+    /**
+     * 截断绘画历史，丢弃被覆盖的 redo 步骤
+     */
+    static final int RECORD_TRUNCATE = 2;
+    /**
+     * 渲染区的步骤数量(游标), 同时也是一次保存的提交标志, 文件末尾没有提交的记录会被忽略
+     */
+    static final int RECORD_CURSOR = 3;
+
+    /**
+     * 读取步骤记录时坐标点缓冲区的最大初始容量(坐标点数量), 更多的坐标点在读取过程中扩容
+     */
+    private static final int POINT_CAPACITY_MAX = 4096;
+
+    /**
+     * 将 DoodleData 保存到指定文件内(写入完整的文件)，保存成功，返回 true, 否则返回 false. 忽略空步骤
+     */
+    public static boolean saveToFile(String filePath, DoodleData doodleData) {
+        return saveToFile(filePath, doodleData, true);
+    }
+
+    /**
+     * 将 DoodleData 保存到指定文件内(写入完整的文件)，保存成功，返回 true, 否则返回 false.
+     * 需要多次保存同一个文件时使用 DoodleDataJournal.
+     */
+    public static boolean saveToFile(String filePath, DoodleData doodleData, boolean ignoreEmptyStep) {
+        return new DoodleDataJournal(filePath, ignoreEmptyStep).save(doodleData);
+    }
+
+    /**
+     * 将 DoodleData 完整编码到输出流中, 内容与 DoodleDataJournal 第一次保存时写入的文件相同.
+     * 不会同步到磁盘，也不会关闭输出流. 保存文件使用 saveToFile 或者 DoodleDataJournal.
+     */
+    public static void writeTo(DoodleData doodleData, boolean ignoreEmptyStep, OutputStream os) throws IOException {
+        if (doodleData == null) {
+            throw new NullPointerException("doodle data is null");
+        }
+        DataOutputStream dos = new DataOutputStream(os);
+        writeHeader(doodleData.width, doodleData.height, doodleData.backgroundColor, dos);
+        // 渲染区的步骤之后是逆序的 redo 区步骤, 游标是渲染区的步骤数量
+        int cursor = 0;
+        if (doodleData.drawStepDatas != null) {
+            for (DoodleData.DrawStepData dsd : doodleData.drawStepDatas) {
+                if (ignoreEmptyStep && (dsd == null || dsd.type == DoodleData.DRAW_STEP_TYPE_EMPTY)) {
+                    continue;
+                }
+                writeStepRecord(dsd, dos);
+                cursor++;
+            }
+        }
+        if (doodleData.drawStepDatasRedo != null) {
+            for (int i = doodleData.drawStepDatasRedo.size() - 1; i >= 0; i--) {
+                DoodleData.DrawStepData dsd = doodleData.drawStepDatasRedo.get(i);
+                if (ignoreEmptyStep && (dsd == null || dsd.type == DoodleData.DRAW_STEP_TYPE_EMPTY)) {
+                    continue;
+                }
+                writeStepRecord(dsd, dos);
+            }
+        }
+        writeValueRecord(RECORD_CURSOR, cursor, dos);
+        dos.flush();
+    }
+
+    /**
+     * 解析指定文件为 DoodleData，解析失败返回 null. 忽略空步骤
+     */
+    public static DoodleData readFromFile(String filePath) {
+        return readFromFile(filePath, true);
+    }
+
+    /**
+     * 解析指定文件为 DoodleData，解析失败返回 null.
+     */
+    public static DoodleData readFromFile(String filePath, boolean ignoreEmptyStep) {
+        DoodleDataReader.DoodleDataBuilder builder = new DoodleDataReader.DoodleDataBuilder();
+        if (read(filePath, ignoreEmptyStep, builder)) {
+            return builder.getDoodleData();
+        }
+        return null;
+    }
+
+    /**
+     * 解析指定文件，解析成功返回 true, 否则返回 false.
+     * 需要重放所有的记录才能确定渲染区和 redo 区，所以绘画步骤的事件在整个文件解析完成之后才会回调.
+     *
+     * @see DoodleDataReader
+     */
+    public static boolean read(String filePath, boolean ignoreEmptyStep, DoodleDataReader.Handler handler) {
+        FileInputStream fis = null;
+        BufferedInputStream bis = null;
+        DataInputStream dis = null;
+        try {
+            fis = new FileInputStream(filePath);
+            bis = new BufferedInputStream(fis);
+            dis = new DataInputStream(bis);
+
+            String ddLine = DoodleDataEditorV2.readHeaderLine(dis);
+            if (!"dd".equalsIgnoreCase(ddLine)) {
+                throw new IllegalArgumentException("dd line not match for file " + filePath);
+            }
+            int version = Integer.parseInt(DoodleDataEditorV2.readHeaderLine(dis));
+            if (version != 3) {
+                throw new IllegalArgumentException("dd file version not support " + version);
+            }
+
+            int width = dis.readInt();
+            int height = dis.readInt();
+            int backgroundColor = dis.readInt();
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("width or height error [" + width + ", " + height + "]");
+            }
+            int pointScale = DoodleDataEditorV2.readVarInt(dis);
+            if (pointScale <= 0) {
+                throw new IllegalArgumentException("point scale error " + pointScale);
+            }
+
+            ArrayList<Record> records = new ArrayList<>();
+            // 最后一次提交之后的记录数量
+            int committedRecords = 0;
+            do {
+                int recordType = dis.read();
+                if (recordType == -1) {
+                    // 文件已经结束
+                    break;
+                }
+
+                Record record = new Record();
+                record.type = recordType;
+                try {
+                    if (recordType == RECORD_STEP) {
+                        record.drawStepData = readStepRecord(dis, pointScale);
+                    } else if (recordType == RECORD_TRUNCATE || recordType == RECORD_CURSOR) {
+                        record.value = DoodleDataEditorV2.readVarInt(dis);
+                    } else {
+                        throw new IllegalArgumentException("record type error " + recordType);
+                    }
+                } catch (Throwable e) {
+                    // 最后一次保存没有完整写入, 或者崩溃之后末尾残留了填充的 0 或者无效的字节.
+                    // 无法解析的记录及其之后的内容都视为没有提交, 重放到最后一次提交为止
+                    DoodleLog.d(TAG + " ignore unreadable records at end of file, " + e);
+                    break;
+                }
+                records.add(record);
+                if (recordType == RECORD_CURSOR) {
+                    committedRecords = records.size();
+                }
+            } while (true);
+
+            if (committedRecords < records.size()) {
+                DoodleLog.d(TAG + " ignore " + (records.size() - committedRecords) + " uncommitted records");
+            }
+
+            // 重放已经提交的记录
+            ArrayList<DoodleData.DrawStepData> history = new ArrayList<>();
+            int cursor = 0;
+            for (int i = 0; i < committedRecords; i++) {
+                Record record = records.get(i);
+                if (record.type == RECORD_STEP) {
+                    history.add(record.drawStepData);
+                } else if (record.type == RECORD_TRUNCATE) {
+                    if (record.value > history.size()) {
+                        throw new IllegalArgumentException("truncate size error " + record.value + ", history size " + history.size());
+                    }
+                    while (history.size() > record.value) {
+                        history.remove(history.size() - 1);
+                    }
+                } else {
+                    if (record.value > history.size()) {
+                        throw new IllegalArgumentException("cursor error " + record.value + ", history size " + history.size());
+                    }
+                    cursor = record.value;
+                }
+            }
+
+            handler.onHeader(width, height, backgroundColor);
+            // 游标之前的步骤属于渲染区，之后的步骤逆序属于 redo 区 (redo 区的最后一个步骤最先被恢复)
+            for (int i = 0; i < cursor; i++) {
+                dispatchDrawStepData(history.get(i), false, ignoreEmptyStep, handler);
+            }
+            for (int i = history.size() - 1; i >= cursor; i--) {
+                dispatchDrawStepData(history.get(i), true, ignoreEmptyStep, handler);
+            }
+            return true;
+        } catch (Throwable e) {
+            e.printStackTrace();
+        } finally {
+            StreamUtil.closeQuietly(dis);
+            StreamUtil.closeQuietly(bis);
+            StreamUtil.closeQuietly(fis);
+        }
+        return false;
+    }
+
+    private static class Record {
+        private int type;
+        private int value;
+        private DoodleData.DrawStepData drawStepData;
+    }
+
+    private static void dispatchDrawStepData(DoodleData.DrawStepData dsd, boolean redo, boolean ignoreEmptyStep,
+                                             DoodleDataReader.Handler handler) {
+        if (ignoreEmptyStep && dsd.type == DoodleData.DRAW_STEP_TYPE_EMPTY) {
+            DoodleLog.d(TAG + " read ignore empty draw step in " + (redo ? "DSR" : "DS"));
+            return;
+        }
+
+        handler.onDrawStepBegin(redo, dsd.type);
+        int size = dsd.points.size();
+        for (int i = 0; i < size; i += 2) {
+            handler.onPoint(dsd.points.get(i), dsd.points.get(i + 1));
+        }
+        if (dsd.brushData != null) {
+            handler.onBrush(dsd.brushData.type, dsd.brushData.color, dsd.brushData.size, dsd.brushData.alpha);
+        }
+        handler.onDrawStepEnd();
+    }
+
+    /**
+     * 写入文件头
+     */
+    static void writeHeader(int width, int height, int backgroundColor, DataOutputStream dos) throws IOException {
+        // 固定头 dd 和版本行, 保持与文本格式一致，使得 DoodleDataEditor#getVersion 可以识别
+        dos.write(HEADER);
+        dos.writeInt(width);
+        dos.writeInt(height);
+        dos.writeInt(backgroundColor);
+        DoodleDataEditorV2.writeVarInt(DoodleDataEditorV2.POINT_SCALE, dos);
+    }
+
+    /**
+     * 写入一个绘画步骤记录 (包含记录类型)
+     */
+    static void writeStepRecord(DoodleData.DrawStepData dsd, DataOutputStream dos) throws IOException {
+        dos.writeByte(RECORD_STEP);
+        dos.writeByte(dsd.type);
+        // 笔刷直接写在记录中，使每一个记录都可以独立解析
+        if (dsd.brushData == null) {
+            dos.writeByte(0);
+        } else {
+            dos.writeByte(1);
+            dos.writeByte(dsd.brushData.type);
+            dos.writeInt(dsd.brushData.color);
+            DoodleDataEditorV2.writeVarInt(dsd.brushData.size, dos);
+            dos.writeByte(dsd.brushData.alpha);
+        }
+
+        int size = dsd.points == null ? 0 : dsd.points.size();
+        if (size % 2 != 0) {
+            throw new IllegalArgumentException("point size not match");
+        }
+        DoodleDataEditorV2.writeVarInt(size / 2, dos);
+        // 第一个点保存量化后的绝对值，之后的点保存与前一个点的差值
+        int preX = 0;
+        int preY = 0;
+        for (int i = 0; i < size; i += 2) {
+            int x = DoodleDataEditorV2.quantize(dsd.points.get(i));
+            int y = DoodleDataEditorV2.quantize(dsd.points.get(i + 1));
+            DoodleDataEditorV2.writeVarInt(DoodleDataEditorV2.zigZagEncode(x - preX), dos);
+            DoodleDataEditorV2.writeVarInt(DoodleDataEditorV2.zigZagEncode(y - preY), dos);
+            preX = x;
+            preY = y;
+        }
+    }
+
+    /**
+     * 写入一个截断记录或者游标记录 (包含记录类型)
+     */
+    static void writeValueRecord(int recordType, int value, DataOutputStream dos) throws IOException {
+        dos.writeByte(recordType);
+        DoodleDataEditorV2.writeVarInt(value, dos);
+    }
+
+    /**
+     * 读取一个绘画步骤记录 (不包含记录类型)
+     */
+    private static DoodleData.DrawStepData readStepRecord(DataInputStream dis, int pointScale) throws IOException {
+        DoodleData.DrawStepData dsd = new DoodleData.DrawStepData();
+        int drawStepType = dis.readUnsignedByte();
+        if (drawStepType == DoodleData.DRAW_STEP_TYPE_EMPTY) {
+            dsd.type = DoodleData.DRAW_STEP_TYPE_EMPTY;
+        } else if (drawStepType == DoodleData.DRAW_STEP_TYPE_POINT) {
+            dsd.type = DoodleData.DRAW_STEP_TYPE_POINT;
+        } else if (drawStepType == DoodleData.DRAW_STEP_TYPE_SCRIBBLE) {
+            dsd.type = DoodleData.DRAW_STEP_TYPE_SCRIBBLE;
+        } else {
+            throw new IllegalArgumentException("draw step type not support " + drawStepType);
+        }
+
+        if (dis.readUnsignedByte() != 0) {
+            DoodleData.BrushData brushData = new DoodleData.BrushData();
+            int brushType = dis.readUnsignedByte();
+            if (brushType == DoodleData.BRUSH_TYPE_EMPTY) {
+                brushData.type = DoodleData.BRUSH_TYPE_EMPTY;
+            } else if (brushType == DoodleData.BRUSH_TYPE_PENCIL) {
+                brushData.type = DoodleData.BRUSH_TYPE_PENCIL;
+            } else if (brushType == DoodleData.BRUSH_TYPE_LEAVES) {
+                brushData.type = DoodleData.BRUSH_TYPE_LEAVES;
+            } else {
+                throw new IllegalArgumentException("brush type not support " + brushType);
+            }
+            brushData.color = dis.readInt();
+            brushData.size = DoodleDataEditorV2.readVarInt(dis);
+            brushData.alpha = dis.readUnsignedByte();
+            dsd.brushData = brushData;
+        }
+
+        int pointCount = DoodleDataEditorV2.readVarInt(dis);
+        if (pointCount < 0) {
+            throw new IllegalArgumentException("point count error " + pointCount);
+        }
+        // 坐标点数量可能来自没有提交的无效字节, 初始容量不直接使用该值, 避免分配过大的数组
+        dsd.points = new PointBuffer(Math.min(pointCount, POINT_CAPACITY_MAX) * 2);
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < pointCount; i++) {
+            x += DoodleDataEditorV2.zigZagDecode(DoodleDataEditorV2.readVarInt(dis));
+            y += DoodleDataEditorV2.zigZagDecode(DoodleDataEditorV2.readVarInt(dis));
+            dsd.points.add(DoodleDataEditorV2.dequantize(x, pointScale), DoodleDataEditorV2.dequantize(y, pointScale));
+        }
+        return dsd;
+    }
+
+}
@@ -0,0 +1,251 @@
+package com.idonans.doodle.editor.v3;
+
+import com.idonans.doodle.DoodleData;
+import com.idonans.doodle.util.DoodleLog;
+import com.idonans.doodle.util.DoodleTrace;
+import com.idonans.doodle.util.StreamUtil;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * 以追加日志的方式反复保存同一个 dd 文件 (版本 3). 第一次保存时写入完整的文件，之后每次保存只在文件末尾追加
+ * 自上次保存以来新增的绘画步骤，以及表示 undo/redo 位置的游标记录，保存的 I/O 开销与新增的内容成正比.
+ * 被撤销之后又被新的绘画步骤覆盖的记录会留在文件中，当这些无效记录的体积超过有效记录时重新写入完整的文件(压缩).
+ * <p/>
+ * 非线程安全，同一个文件的所有保存操作需要在同一个线程中进行.
+ * Created by pengji on 16-7-26.
+ */
+public class DoodleDataJournal {
+
+    private static final String TAG = "DoodleDataJournal";
+
+    /**
+     * 无效记录至少达到该字节数时才会压缩
+     */
+    private static final long COMPACT_BYTES_MIN = 64 * 1024;
+
+    private final String mFilePath;
+    private final boolean mIgnoreEmptyStep;
+
+    // 文件中已经保存的内容, 仅当 mWritten 为 true 时有效
+    private boolean mWritten;
+    private int mWidth;
+    private int mHeight;
+    private int mBackgroundColor;
+    // 绘画历史: 渲染区的步骤之后是逆序的 redo 区步骤, mCursor 是渲染区的步骤数量
+    private final ArrayList<DoodleData.DrawStepData> mHistory = new ArrayList<>();
+    // 绘画历史中每一个步骤记录的字节数
+    private int[] mHistoryBytes = new int[64];
+    private int mCursor;
+    // 最后一个游标记录的字节数
+    private int mCursorBytes;
+    // 有效记录和无效记录的字节数
+    private long mLiveBytes;
+    private long mDeadBytes;
+
+    public DoodleDataJournal(String filePath, boolean ignoreEmptyStep) {
+        mFilePath = filePath;
+        mIgnoreEmptyStep = ignoreEmptyStep;
+    }
+
+    public String getFilePath() {
+        return mFilePath;
+    }
+
+    /**
+     * 保存 DoodleData, 保存成功返回 true, 否则返回 false. 保存失败之后，下一次保存会重新写入完整的文件.
+     */
+    public boolean save(DoodleData doodleData) {
+        DoodleTrace.beginSection("DoodleDataJournal.save");
+        try {
+            return saveInternal(doodleData);
+        } finally {
+            DoodleTrace.endSection();
+        }
+    }
+
+    private boolean saveInternal(DoodleData doodleData) {
+        try {
+            if (doodleData == null) {
+                throw new NullPointerException("doodle data is null");
+            }
+
+            ArrayList<DoodleData.DrawStepData> history = new ArrayList<>();
+            if (doodleData.drawStepDatas != null) {
+                for (DoodleData.DrawStepData dsd : doodleData.drawStepDatas) {
+                    addToHistory(dsd, history);
+                }
+            }
+            final int cursor = history.size();
+            if (doodleData.drawStepDatasRedo != null) {
+                for (int i = doodleData.drawStepDatasRedo.size() - 1; i >= 0; i--) {
+                    addToHistory(doodleData.drawStepDatasRedo.get(i), history);
+                }
+            }
+
+            if (!mWritten
+                    || mWidth != doodleData.width
+                    || mHeight != doodleData.height
+                    || mBackgroundColor != doodleData.backgroundColor) {
+                writeFull(doodleData, history, cursor);
+                return true;
+            }
+
+            // 与已经保存的绘画历史比较，找到相同的部分, 只在内存中比较，不涉及 I/O
+            final int historySize = mHistory.size();
+            int common = 0;
+            while (common < historySize
+                    && common < history.size()
+                    && mHistory.get(common).equals(history.get(common))) {
+                common++;
+            }
+
+            if (common == historySize && common == history.size() && cursor == mCursor) {
+                DoodleLog.d(TAG + " nothing changed since last save");
+                return true;
+            }
+
+            long deadBytes = mDeadBytes + mCursorBytes;
+            for (int i = common; i < historySize; i++) {
+                deadBytes += mHistoryBytes[i];
+            }
+            if (deadBytes > Math.max(COMPACT_BYTES_MIN, mLiveBytes)) {
+                DoodleLog.d(TAG + " compact journal, dead bytes " + deadBytes + ", live bytes " + mLiveBytes);
+                writeFull(doodleData, history, cursor);
+                return true;
+            }
+
+            append(history, common, cursor);
+            return true;
+        } catch (Throwable e) {
+            e.printStackTrace();
+            // 文件中的内容已经不确定
+            mWritten = false;
+        }
+        return false;
+    }
+
+    private void addToHistory(DoodleData.DrawStepData dsd, ArrayList<DoodleData.DrawStepData> history) {
+        if (mIgnoreEmptyStep && (dsd == null || dsd.type == DoodleData.DRAW_STEP_TYPE_EMPTY)) {
+            DoodleLog.d(TAG + " write ignore empty draw step");
+            return;
+        }
+        history.add(dsd);
+    }
+
+    /**
+     * 写入完整的文件. 先写入临时文件，成功之后替换原文件
+     */
+    private void writeFull(DoodleData doodleData, ArrayList<DoodleData.DrawStepData> history, int cursor) throws IOException {
+        mWritten = false;
+        mHistory.clear();
+        mLiveBytes = 0;
+        mDeadBytes = 0;
+
+        File file = new File(mFilePath);
+        File tmpFile = new File(mFilePath + ".tmp");
+        FileOutputStream fos = null;
+        BufferedOutputStream bos = null;
+        DataOutputStream dos = null;
+        try {
+            fos = new FileOutputStream(tmpFile, false);
+            bos = new BufferedOutputStream(fos);
+            dos = new DataOutputStream(bos);
+
+            DoodleDataEditorV3.writeHeader(doodleData.width, doodleData.height, doodleData.backgroundColor, dos);
+            for (DoodleData.DrawStepData dsd : history) {
+                int offset = dos.size();
+                DoodleDataEditorV3.writeStepRecord(dsd, dos);
+                addHistory(dsd, dos.size() - offset);
+            }
+            int offset = dos.size();
+            DoodleDataEditorV3.writeValueRecord(DoodleDataEditorV3.RECORD_CURSOR, cursor, dos);
+            mCursorBytes = dos.size() - offset;
+            dos.flush();
+            // 替换原文件之前确保内容已经写入磁盘, 否则崩溃之后可能得到一个已经替换但是内容不完整的文件
+            fos.getFD().sync();
+        } finally {
+            StreamUtil.closeQuietly(dos);
+            StreamUtil.closeQuietly(bos);
+            StreamUtil.closeQuietly(fos);
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+            throw new IOException("fail to rename " + tmpFile + " to " + file);
+        }
+
+        mWidth = doodleData.width;
+        mHeight = doodleData.height;
+        mBackgroundColor = doodleData.backgroundColor;
+        mCursor = cursor;
+        mWritten = true;
+    }
+
+    /**
+     * 在文件末尾追加记录: 截断绘画历史至 common, 追加之后的新步骤, 最后写入游标作为提交标志
+     */
+    private void append(ArrayList<DoodleData.DrawStepData> history, int common, int cursor) throws IOException {
+        // 先完整编码所有的记录，再一次性写入文件
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bytes);
+
+        long deadBytes = mDeadBytes + mCursorBytes;
+        if (common < mHistory.size()) {
+            for (int i = common; i < mHistory.size(); i++) {
+                deadBytes += mHistoryBytes[i];
+                mLiveBytes -= mHistoryBytes[i];
+            }
+            DoodleDataEditorV3.writeValueRecord(DoodleDataEditorV3.RECORD_TRUNCATE, common, dos);
+            // 截断记录本身也是无效数据
+            deadBytes += dos.size();
+            while (mHistory.size() > common) {
+                mHistory.remove(mHistory.size() - 1);
+            }
+        }
+
+        for (int i = common; i < history.size(); i++) {
+            DoodleData.DrawStepData dsd = history.get(i);
+            int offset = dos.size();
+            DoodleDataEditorV3.writeStepRecord(dsd, dos);
+            addHistory(dsd, dos.size() - offset);
+        }
+        int offset = dos.size();
+        DoodleDataEditorV3.writeValueRecord(DoodleDataEditorV3.RECORD_CURSOR, cursor, dos);
+        mCursorBytes = dos.size() - offset;
+        mDeadBytes = deadBytes;
+        mCursor = cursor;
+
+        // 写入过程中出错会在 save 中重置 mWritten, 下一次保存时重新写入完整的文件
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream(mFilePath, true);
+            bytes.writeTo(fos);
+            fos.flush();
+            // 游标记录写入磁盘之后本次保存才算提交
+            fos.getFD().sync();
+        } finally {
+            StreamUtil.closeQuietly(fos);
+        }
+        DoodleLog.d(TAG + " append " + bytes.size() + " bytes, " + (history.size() - common) + " new draw steps");
+    }
+
+    private void addHistory(DoodleData.DrawStepData dsd, int bytes) {
+        int index = mHistory.size();
+        if (index >= mHistoryBytes.length) {
+            int[] historyBytes = new int[mHistoryBytes.length * 2];
+            System.arraycopy(mHistoryBytes, 0, historyBytes, 0, index);
+            mHistoryBytes = historyBytes;
+        }
+        mHistoryBytes[index] = bytes;
+        mHistory.add(dsd);
+        mLiveBytes += bytes;
+    }
+
+}
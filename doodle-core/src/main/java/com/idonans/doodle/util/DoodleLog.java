@@ -0,0 +1,53 @@
+package com.idonans.doodle.util;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * doodle-core 中使用的日志, 默认输出到 java.util.logging. Android 中由 doodle 模块替换为 CommonLog 输出.
+ * Created by pengji on 16-7-30.
+ */
+public class DoodleLog {
+
+    public interface Printer {
+        void d(String msg);
+
+        void e(String msg);
+    }
+
+    private static final Printer DEFAULT_PRINTER = new Printer() {
+
+        private final Logger mLogger = Logger.getLogger("doodle");
+
+        @Override
+        public void d(String msg) {
+            mLogger.log(Level.FINE, msg);
+        }
+
+        @Override
+        public void e(String msg) {
+            mLogger.log(Level.SEVERE, msg);
+        }
+    };
+
+    private static volatile Printer sPrinter = DEFAULT_PRINTER;
+
+    private DoodleLog() {
+    }
+
+    /**
+     * 设置日志输出, 为 null 时恢复默认的输出
+     */
+    public static void setPrinter(Printer printer) {
+        sPrinter = printer != null ? printer : DEFAULT_PRINTER;
+    }
+
+    public static void d(String msg) {
+        sPrinter.d(msg);
+    }
+
+    public static void e(String msg) {
+        sPrinter.e(msg);
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.idonans.doodle.util;
+
+/**
+ * 命名的追踪区间, 用于在 Systrace/Perfetto 中查看耗时. 默认没有 Tracer, 此时每一个区间只有一次 volatile 读取的开销.
+ * Android 中由 doodle 模块设置为 android.os.Trace.
+ * <p/>
+ * beginSection 和 endSection 需要在同一个线程中成对调用, Tracer 应该在开始使用之前设置.
+ * Created by pengji on 16-7-30.
+ */
+public class DoodleTrace {
+
+    public interface Tracer {
+        void beginSection(String sectionName);
+
+        void endSection();
+    }
+
+    private static volatile Tracer sTracer;
+
+    private DoodleTrace() {
+    }
+
+    /**
+     * 设置 Tracer, 为 null 时关闭追踪
+     */
+    public static void setTracer(Tracer tracer) {
+        sTracer = tracer;
+    }
+
+    public static Tracer getTracer() {
+        return sTracer;
+    }
+
+    public static void beginSection(String sectionName) {
+        Tracer tracer = sTracer;
+        if (tracer != null) {
+            tracer.beginSection(sectionName);
+        }
+    }
+
+    public static void endSection() {
+        Tracer tracer = sTracer;
+        if (tracer != null) {
+            tracer.endSection();
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.idonans.doodle.util;
+
+import java.io.Closeable;
+import java.nio.charset.Charset;
+
+/**
+ * doodle-core 中使用的 IO 工具, 不依赖 Android
+ * Created by pengji on 16-7-30.
+ */
+public class StreamUtil {
+
+    public static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private StreamUtil() {
+    }
+
+    public static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (Throwable e) {
+                // ignore
+            }
+        }
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.idonans.doodle;
+
+import android.app.Activity;
+import android.os.Bundle;
+
+import com.idonans.doodle.brush.Pencil;
+
+/**
+ * 只包含一个全屏 DoodleView 的页面, 触摸事件回放使用
+ * Created by pengji on 16-7-30.
+ */
+public class DoodleReplayActivity extends Activity {
+
+    private DoodleView mDoodleView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mDoodleView = new DoodleView(this);
+        mDoodleView.setBrush(new Pencil(0xff000000, 10, 255));
+        setContentView(mDoodleView);
+    }
+
+    public DoodleView getDoodleView() {
+        return mDoodleView;
+    }
+
+}
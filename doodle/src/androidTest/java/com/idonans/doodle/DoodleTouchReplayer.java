@@ -0,0 +1,326 @@
+package com.idonans.doodle;
+
+import android.os.Build;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.view.MotionEvent;
+
+import com.idonans.acommon.lang.CommonLog;
+
+import java.util.Arrays;
+
+/**
+ * 触摸事件回放的负载生成器: 按照 TouchStream 中的时间把采样组装为 MotionEvent(同一帧内的轨迹点作为历史采样批量提交),
+ * 在 ui 线程中交给 DoodleView#dispatchTouchEvent, 用于复现输入延迟问题.
+ * <p/>
+ * 记录每一个触摸事件从分发到对应的 Draw 提交 texture 的延迟, 渲染队列的长度和回放期间的 GC 次数.
+ * 需要 DoodleView 已经显示在窗口中(texture 可用), 只在设备上运行. 回放期间会清空 DoodleView 的渲染统计数据.
+ * <p/>
+ * 同一个 DoodleView 同时只能有一个回放.
+ * Created by pengji on 16-7-30.
+ */
+public class DoodleTouchReplayer {
+
+    private static final String TAG = "DoodleTouchReplayer";
+
+    /**
+     * 分发触摸事件的间隔, 与屏幕的刷新间隔一致, 两次分发之间的轨迹点作为历史采样
+     */
+    private static final long FRAME_INTERVAL_MS = 16;
+    /**
+     * 所有的事件分发完毕之后，等待绘制完成的最长时间
+     */
+    private static final long FINISH_TIMEOUT_MS = 2000;
+
+    public interface Callback {
+        /**
+         * 回放结束, 在 ui 线程中回调
+         */
+        void onFinished(@NonNull Report report);
+    }
+
+    /**
+     * 回放的结果, 延迟的单位为毫秒
+     */
+    public static class Report {
+        /**
+         * 分发的 MotionEvent 数量
+         */
+        public final int eventCount;
+        /**
+         * DoodleView 正在加载，没有交给渲染线程处理的事件数量
+         */
+        public final int ignoredEventCount;
+        /**
+         * 回放结束时仍然没有绘制完成的事件数量
+         */
+        public final int pendingEventCount;
+        public final float latencyP50Ms;
+        public final float latencyP90Ms;
+        public final float latencyP99Ms;
+        public final float latencyMaxMs;
+        /**
+         * Draw 执行时渲染队列中等待执行的任务数量的最大值
+         */
+        public final int queueDepthMax;
+        /**
+         * 回放期间 Draw 的耗时统计
+         */
+        public final DoodleMetrics.Histogram drawDurationNanos;
+        /**
+         * 回放期间的 GC 次数, 不支持时为 -1
+         */
+        public final long gcCount;
+        public final long durationMs;
+
+        private Report(int eventCount, int ignoredEventCount, int pendingEventCount, long[] latencies,
+                       int queueDepthMax, DoodleMetrics.Histogram drawDurationNanos, long gcCount, long durationMs) {
+            this.eventCount = eventCount;
+            this.ignoredEventCount = ignoredEventCount;
+            this.pendingEventCount = pendingEventCount;
+            Arrays.sort(latencies);
+            this.latencyP50Ms = percentileMs(latencies, 0.5f);
+            this.latencyP90Ms = percentileMs(latencies, 0.9f);
+            this.latencyP99Ms = percentileMs(latencies, 0.99f);
+            this.latencyMaxMs = latencies.length > 0 ? latencies[latencies.length - 1] / 1000000f : 0f;
+            this.queueDepthMax = queueDepthMax;
+            this.drawDurationNanos = drawDurationNanos;
+            this.gcCount = gcCount;
+            this.durationMs = durationMs;
+        }
+
+        private static float percentileMs(long[] sortedLatencies, float percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0f;
+            }
+            int index = Math.min(sortedLatencies.length - 1, (int) (sortedLatencies.length * percentile));
+            return sortedLatencies[index] / 1000000f;
+        }
+
+        @Override
+        public String toString() {
+            return "events:" + eventCount + ", ignored:" + ignoredEventCount + ", pending:" + pendingEventCount
+                    + ", latency p50:" + latencyP50Ms + "ms, p90:" + latencyP90Ms + "ms, p99:" + latencyP99Ms
+                    + "ms, max:" + latencyMaxMs + "ms, queue depth max:" + queueDepthMax
+                    + ", draw ns [" + drawDurationNanos + "]"
+                    + ", gc:" + gcCount + ", duration:" + durationMs + "ms";
+        }
+    }
+
+    private final DoodleView mDoodleView;
+    private final TouchStream mTouchStream;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private Callback mCallback;
+    private boolean mStarted;
+    private long mStartUptime;
+    private long mFinishUptime;
+    private long mGcCountStart;
+    // 下一个等待分发的采样
+    private int mNextIndex;
+    // 当前手势按下的时间, MotionEvent 需要
+    private long mDownTime;
+
+    // 开始回放时 DoodleView 中的触摸事件计数, 之后的第 i 个事件的计数为 mTouchEventCountStart + i + 1
+    private int mTouchEventCountStart;
+    // 每一个交给渲染线程的事件的分发时间和延迟, 延迟由渲染线程写入, 为 0 表示还没有绘制完成
+    private long[] mDispatchTimes;
+    private long[] mLatencies;
+    private int mEventCount;
+    private int mIgnoredEventCount;
+    // 已经绘制完成的事件计数, 在渲染线程中写入
+    private volatile int mFramedTouchEventCount;
+
+    public DoodleTouchReplayer(@NonNull DoodleView doodleView, @NonNull TouchStream touchStream) {
+        mDoodleView = doodleView;
+        mTouchStream = touchStream;
+    }
+
+    /**
+     * 开始回放, 需要在 ui 线程中调用
+     */
+    public void start(@Nullable Callback callback) {
+        if (mStarted) {
+            throw new IllegalStateException("already started");
+        }
+        mStarted = true;
+        mCallback = callback;
+
+        // 每一个事件至少包含一个采样
+        mDispatchTimes = new long[mTouchStream.size()];
+        mLatencies = new long[mTouchStream.size()];
+        mTouchEventCountStart = mDoodleView.getTouchEventCount();
+        mFramedTouchEventCount = mTouchEventCountStart;
+        mGcCountStart = getGcCount();
+        mDoodleView.resetRenderMetrics();
+        mStartUptime = SystemClock.uptimeMillis();
+        mDoodleView.setTouchFrameListener(mTouchFrameListener);
+        mHandler.post(mFrame);
+    }
+
+    /**
+     * 停止回放, 不会回调 Callback
+     */
+    public void stop() {
+        mHandler.removeCallbacks(mFrame);
+        mDoodleView.setTouchFrameListener(null);
+        mCallback = null;
+    }
+
+    private final DoodleView.TouchFrameListener mTouchFrameListener = new DoodleView.TouchFrameListener() {
+        @Override
+        public void onTouchFrame(int touchEventCount) {
+            // 渲染线程
+            long now = System.nanoTime();
+            int framed = mFramedTouchEventCount;
+            for (int count = framed + 1; count <= touchEventCount; count++) {
+                int index = count - mTouchEventCountStart - 1;
+                if (index >= 0 && index < mLatencies.length) {
+                    mLatencies[index] = Math.max(1L, now - mDispatchTimes[index]);
+                }
+            }
+            if (touchEventCount > framed) {
+                mFramedTouchEventCount = touchEventCount;
+            }
+        }
+    };
+
+    private final Runnable mFrame = new Runnable() {
+        @Override
+        public void run() {
+            long uptime = SystemClock.uptimeMillis();
+            dispatchUntil((uptime - mStartUptime) * 1000000L);
+
+            if (mNextIndex < mTouchStream.size()) {
+                mHandler.postAtTime(this, uptime + FRAME_INTERVAL_MS);
+                return;
+            }
+
+            if (mFinishUptime == 0L) {
+                mFinishUptime = uptime;
+            }
+            boolean framed = mFramedTouchEventCount >= mDoodleView.getTouchEventCount();
+            if (!framed && uptime - mFinishUptime < FINISH_TIMEOUT_MS) {
+                // 等待最后的事件绘制完成
+                mHandler.postAtTime(this, uptime + FRAME_INTERVAL_MS);
+                return;
+            }
+            finish();
+        }
+    };
+
+    /**
+     * 分发时间不晚于 timeNanos 的所有采样, 连续的轨迹点合并为一个 MotionEvent
+     */
+    private void dispatchUntil(long timeNanos) {
+        final int size = mTouchStream.size();
+        while (mNextIndex < size && mTouchStream.getTimeNanos(mNextIndex) <= timeNanos) {
+            final int index = mNextIndex++;
+            final int action = mTouchStream.getAction(index);
+            switch (action) {
+                case TouchStream.ACTION_UNDO:
+                    mDoodleView.undo();
+                    break;
+                case TouchStream.ACTION_REDO:
+                    mDoodleView.redo();
+                    break;
+                case TouchStream.ACTION_DOWN: {
+                    mDownTime = getEventTime(index);
+                    dispatch(MotionEvent.obtain(mDownTime, mDownTime, MotionEvent.ACTION_DOWN,
+                            mTouchStream.getX(index), mTouchStream.getY(index), 0));
+                    break;
+                }
+                case TouchStream.ACTION_UP: {
+                    dispatch(MotionEvent.obtain(mDownTime, getEventTime(index), MotionEvent.ACTION_UP,
+                            mTouchStream.getX(index), mTouchStream.getY(index), 0));
+                    break;
+                }
+                case TouchStream.ACTION_MOVE: {
+                    MotionEvent event = MotionEvent.obtain(mDownTime, getEventTime(index), MotionEvent.ACTION_MOVE,
+                            mTouchStream.getX(index), mTouchStream.getY(index), 0);
+                    // 同一帧内之后的轨迹点追加到同一个事件中, 之前的点成为历史采样
+                    while (mNextIndex < size
+                            && mTouchStream.getAction(mNextIndex) == TouchStream.ACTION_MOVE
+                            && mTouchStream.getTimeNanos(mNextIndex) <= timeNanos) {
+                        final int batchIndex = mNextIndex++;
+                        event.addBatch(getEventTime(batchIndex),
+                                mTouchStream.getX(batchIndex), mTouchStream.getY(batchIndex), 1f, 1f, 0);
+                    }
+                    dispatch(event);
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("unknown action " + action);
+            }
+        }
+    }
+
+    private long getEventTime(int index) {
+        return mStartUptime + mTouchStream.getTimeNanos(index) / 1000000L;
+    }
+
+    private void dispatch(MotionEvent event) {
+        final int index = mDoodleView.getTouchEventCount() - mTouchEventCountStart;
+        if (index < mDispatchTimes.length) {
+            // 在分发之前写入，渲染线程读取计数之后可以看到
+            mDispatchTimes[index] = System.nanoTime();
+        }
+        mDoodleView.dispatchTouchEvent(event);
+        event.recycle();
+
+        mEventCount++;
+        if (mDoodleView.getTouchEventCount() - mTouchEventCountStart == index) {
+            // 没有交给渲染线程
+            mIgnoredEventCount++;
+        }
+    }
+
+    private void finish() {
+        mDoodleView.setTouchFrameListener(null);
+
+        int acceptedCount = Math.min(mDoodleView.getTouchEventCount() - mTouchEventCountStart, mLatencies.length);
+        int framedCount = Math.min(mFramedTouchEventCount - mTouchEventCountStart, acceptedCount);
+        long[] latencies = Arrays.copyOf(mLatencies, framedCount);
+
+        long gcCount = getGcCount();
+        DoodleMetrics metrics = mDoodleView.getRenderMetrics();
+        Report report = new Report(
+                mEventCount,
+                mIgnoredEventCount,
+                acceptedCount - framedCount,
+                latencies,
+                metrics.queueDepthMax,
+                metrics.drawDurationNanos,
+                gcCount >= 0 && mGcCountStart >= 0 ? gcCount - mGcCountStart : -1L,
+                SystemClock.uptimeMillis() - mStartUptime);
+        CommonLog.d(TAG + " finish " + report);
+
+        Callback callback = mCallback;
+        mCallback = null;
+        if (callback != null) {
+            callback.onFinished(report);
+        }
+    }
+
+    /**
+     * 当前进程累计的 GC 次数, 从 ART 的运行时统计中读取(Android 6.0 以上), 不支持时返回 -1.
+     */
+    private static long getGcCount() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            String gcCount = Debug.getRuntimeStat("art.gc.gc-count");
+            if (gcCount != null) {
+                try {
+                    return Long.parseLong(gcCount);
+                } catch (NumberFormatException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        return -1L;
+    }
+
+}
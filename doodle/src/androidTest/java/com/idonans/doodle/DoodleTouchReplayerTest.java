@@ -0,0 +1,154 @@
+package com.idonans.doodle;
+
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.idonans.acommon.App;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 在设备上把合成的触摸序列回放到真实显示的 DoodleView 中, 延迟是触摸事件分发到 texture 提交的时间.
+ * <p/>
+ * 回放时长和采样率可以通过 instrumentation 参数修改, 例如:
+ * ./gradlew :doodle:connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.durationMs=600000
+ * -Pandroid.testInstrumentationRunnerArguments.sampleRateHz=240
+ * Created by pengji on 16-7-30.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DoodleTouchReplayerTest {
+
+    private static final String TAG = "DoodleTouchReplayerTest";
+
+    // 默认回放 3 分钟
+    private static final long DEFAULT_DURATION_MS = 3 * 60 * 1000L;
+    private static final int DEFAULT_SAMPLE_RATE_HZ = 120;
+    // 每 4 次滑动插入 undo/redo
+    private static final int UNDO_REDO_STROKE_SIZE = 4;
+    private static final long INIT_TIMEOUT_MS = 10000;
+    // 回放时长之外, 等待回放结束的时间
+    private static final long FINISH_TIMEOUT_MS = 30000;
+
+    private static boolean sAppInit;
+
+    @Before
+    public void setUp() {
+        if (sAppInit) {
+            return;
+        }
+        sAppInit = true;
+        App.init(new App.Config.Builder()
+                .setContext(InstrumentationRegistry.getTargetContext().getApplicationContext())
+                .setBuildConfigAdapter(new App.BuildConfigAdapter() {
+                    @Override
+                    public int getVersionCode() {
+                        return BuildConfig.VERSION_CODE;
+                    }
+
+                    @Override
+                    public String getVersionName() {
+                        return BuildConfig.VERSION_NAME;
+                    }
+
+                    @Override
+                    public String getLogTag() {
+                        return BuildConfig.APPLICATION_ID;
+                    }
+
+                    @Override
+                    public int getLogLevel() {
+                        return Log.DEBUG;
+                    }
+
+                    @Override
+                    public boolean isDebug() {
+                        return BuildConfig.DEBUG;
+                    }
+                })
+                .build());
+    }
+
+    @Test
+    public void replaySyntheticStream() throws Exception {
+        Bundle arguments = InstrumentationRegistry.getArguments();
+        final long durationMs = Long.parseLong(arguments.getString("durationMs", String.valueOf(DEFAULT_DURATION_MS)));
+        final int sampleRateHz = Integer.parseInt(arguments.getString("sampleRateHz", String.valueOf(DEFAULT_SAMPLE_RATE_HZ)));
+
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Intent intent = new Intent(instrumentation.getTargetContext(), DoodleReplayActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        final DoodleReplayActivity activity = (DoodleReplayActivity) instrumentation.startActivitySync(intent);
+        try {
+            final DoodleView doodleView = activity.getDoodleView();
+            awaitLoaded(instrumentation, doodleView);
+
+            final TouchStream touchStream = TouchStream.createSynthetic(1L, sampleRateHz, durationMs,
+                    doodleView.getWidth(), doodleView.getHeight(), UNDO_REDO_STROKE_SIZE);
+            final DoodleTouchReplayer.Report[] reports = new DoodleTouchReplayer.Report[1];
+            final CountDownLatch finished = new CountDownLatch(1);
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    new DoodleTouchReplayer(doodleView, touchStream).start(new DoodleTouchReplayer.Callback() {
+                        @Override
+                        public void onFinished(DoodleTouchReplayer.Report report) {
+                            reports[0] = report;
+                            finished.countDown();
+                        }
+                    });
+                }
+            });
+            assertTrue("replay not finished", finished.await(durationMs + FINISH_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+
+            DoodleTouchReplayer.Report report = reports[0];
+            assertNotNull(report);
+            Log.i(TAG, sampleRateHz + "Hz " + report);
+            assertTrue(report.toString(), report.eventCount > 0);
+            assertEquals(report.toString(), 0, report.ignoredEventCount);
+            assertEquals(report.toString(), 0, report.pendingEventCount);
+            assertTrue(report.toString(), report.latencyP50Ms > 0f);
+            assertTrue(report.toString(), report.drawDurationNanos.getCount() > 0);
+        } finally {
+            activity.finish();
+        }
+    }
+
+    /**
+     * 等待 texture 可用并且 DoodleView 隐藏 loading 视图, 之前的触摸事件都会被忽略
+     */
+    private static void awaitLoaded(Instrumentation instrumentation, final DoodleView doodleView) {
+        final boolean[] loaded = new boolean[1];
+        long deadline = SystemClock.uptimeMillis() + INIT_TIMEOUT_MS;
+        while (true) {
+            instrumentation.runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    loaded[0] = !doodleView.isLoadingShown();
+                }
+            });
+            if (loaded[0]) {
+                return;
+            }
+            if (SystemClock.uptimeMillis() > deadline) {
+                fail("doodle view is still loading");
+            }
+            SystemClock.sleep(50);
+        }
+    }
+
+}
@@ -0,0 +1,204 @@
+package com.idonans.doodle;
+
+import android.support.annotation.NonNull;
+
+import com.idonans.acommon.util.IOUtil;
+import com.idonans.doodle.util.StreamUtil;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 用于回放的触摸采样序列, 坐标是 DoodleView 中的坐标(像素), 时间是相对于序列开始的纳秒数.
+ * 除了触摸采样之外还可以包含 undo 和 redo 操作.
+ * <p/>
+ * 文本格式每一行一个采样: "时间(纳秒) 动作 x y", 以 # 开始的行是注释.
+ * Created by pengji on 16-7-30.
+ */
+public class TouchStream {
+
+    public static final int ACTION_DOWN = 0;
+    public static final int ACTION_MOVE = 1;
+    public static final int ACTION_UP = 2;
+    /**
+     * 调用 DoodleView#undo, 没有坐标
+     */
+    public static final int ACTION_UNDO = 3;
+    /**
+     * 调用 DoodleView#redo, 没有坐标
+     */
+    public static final int ACTION_REDO = 4;
+
+    private long[] mTimes = new long[256];
+    private int[] mActions = new int[256];
+    private float[] mValues = new float[512];
+    private int mSize;
+
+    /**
+     * 追加一个采样, 时间不能早于上一个采样
+     */
+    public void add(long timeNanos, int action, float x, float y) {
+        if (action < ACTION_DOWN || action > ACTION_REDO) {
+            throw new IllegalArgumentException("unknown action " + action);
+        }
+        if (mSize > 0 && timeNanos < mTimes[mSize - 1]) {
+            throw new IllegalArgumentException("time must not go back " + timeNanos);
+        }
+        if (mSize == mTimes.length) {
+            mTimes = Arrays.copyOf(mTimes, mSize * 2);
+            mActions = Arrays.copyOf(mActions, mSize * 2);
+            mValues = Arrays.copyOf(mValues, mSize * 4);
+        }
+        mTimes[mSize] = timeNanos;
+        mActions[mSize] = action;
+        mValues[mSize * 2] = x;
+        mValues[mSize * 2 + 1] = y;
+        mSize++;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public long getTimeNanos(int index) {
+        return mTimes[index];
+    }
+
+    public int getAction(int index) {
+        return mActions[index];
+    }
+
+    public float getX(int index) {
+        return mValues[index * 2];
+    }
+
+    public float getY(int index) {
+        return mValues[index * 2 + 1];
+    }
+
+    public long getDurationNanos() {
+        return mSize > 0 ? mTimes[mSize - 1] : 0L;
+    }
+
+    /**
+     * 生成确定性的合成触摸序列: 随机游走的单指滑动, 按照指定的采样率输出轨迹点, 相同的参数总是生成相同的序列.
+     *
+     * @param sampleRateHz       触摸采样率, 例如 120 或者 240
+     * @param durationMs         序列的总时长
+     * @param width              DoodleView 的宽度, 轨迹点不会超出 [0, width]
+     * @param height             DoodleView 的高度
+     * @param undoRedoStrokeSize 每隔多少次滑动插入一次 undo, 其中一半随后紧跟 redo. 小于等于 0 时不插入
+     */
+    public static TouchStream createSynthetic(long seed, int sampleRateHz, long durationMs,
+                                              int width, int height, int undoRedoStrokeSize) {
+        if (sampleRateHz <= 0 || width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("sample rate and size must > 0");
+        }
+
+        TouchStream touchStream = new TouchStream();
+        Random random = new Random(seed);
+        final long sampleInterval = 1000000000L / sampleRateHz;
+        final long duration = durationMs * 1000000L;
+        long time = 0L;
+        int strokeCount = 0;
+        while (time < duration) {
+            // 一次滑动持续 0.3 ~ 1.5 秒
+            long strokeEnd = Math.min(duration, time + (300 + random.nextInt(1200)) * 1000000L);
+            float x = random.nextFloat() * width;
+            float y = random.nextFloat() * height;
+            double angle = random.nextDouble() * Math.PI * 2;
+            // 手指移动的速度(像素/秒)
+            float speed = 200f + random.nextFloat() * 1800f;
+            touchStream.add(time, ACTION_DOWN, x, y);
+            while (time + sampleInterval < strokeEnd) {
+                time += sampleInterval;
+                angle += random.nextGaussian() * 0.2;
+                float distance = speed * sampleInterval / 1000000000f;
+                x = Math.max(0f, Math.min(x + (float) (Math.cos(angle) * distance), width));
+                y = Math.max(0f, Math.min(y + (float) (Math.sin(angle) * distance), height));
+                touchStream.add(time, ACTION_MOVE, x, y);
+            }
+            time += sampleInterval;
+            touchStream.add(time, ACTION_UP, x, y);
+            strokeCount++;
+
+            // 两次滑动之间间隔 0.1 ~ 0.4 秒
+            time += (100 + random.nextInt(300)) * 1000000L;
+            if (undoRedoStrokeSize > 0 && strokeCount % undoRedoStrokeSize == 0) {
+                touchStream.add(time, ACTION_UNDO, 0f, 0f);
+                if (random.nextBoolean()) {
+                    time += (100 + random.nextInt(300)) * 1000000L;
+                    touchStream.add(time, ACTION_REDO, 0f, 0f);
+                }
+                time += (100 + random.nextInt(300)) * 1000000L;
+            }
+        }
+        return touchStream;
+    }
+
+    /**
+     * 从文本文件中读取, 失败时返回 null
+     */
+    public static TouchStream read(@NonNull File file) {
+        FileInputStream fis = null;
+        BufferedReader br = null;
+        try {
+            fis = new FileInputStream(file);
+            br = new BufferedReader(new InputStreamReader(fis, StreamUtil.UTF8));
+            TouchStream touchStream = new TouchStream();
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts.length != 4) {
+                    throw new IllegalArgumentException("line format error " + line);
+                }
+                touchStream.add(Long.parseLong(parts[0]), Integer.parseInt(parts[1]),
+                        Float.parseFloat(parts[2]), Float.parseFloat(parts[3]));
+            }
+            return touchStream;
+        } catch (Throwable e) {
+            e.printStackTrace();
+        } finally {
+            IOUtil.closeQuietly(br);
+            IOUtil.closeQuietly(fis);
+        }
+        return null;
+    }
+
+    /**
+     * 保存为文本文件, 成功返回 true
+     */
+    public boolean write(@NonNull File file) {
+        FileOutputStream fos = null;
+        BufferedWriter bw = null;
+        try {
+            fos = new FileOutputStream(file, false);
+            bw = new BufferedWriter(new OutputStreamWriter(fos, StreamUtil.UTF8));
+            bw.write("# time(ns) action x y\n");
+            for (int i = 0; i < mSize; i++) {
+                bw.write(mTimes[i] + " " + mActions[i] + " " + getX(i) + " " + getY(i) + "\n");
+            }
+            bw.flush();
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            IOUtil.closeQuietly(bw);
+            IOUtil.closeQuietly(fos);
+        }
+        return false;
+    }
+
+}
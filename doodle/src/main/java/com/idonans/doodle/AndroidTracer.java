@@ -0,0 +1,26 @@
+package com.idonans.doodle;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+
+import com.idonans.doodle.util.DoodleTrace;
+
+/**
+ * 将 doodle 中的追踪区间输出到 android.os.Trace, 没有开启追踪时 Trace 本身几乎没有开销
+ * Created by pengji on 16-7-30.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+class AndroidTracer implements DoodleTrace.Tracer {
+
+    @Override
+    public void beginSection(String sectionName) {
+        Trace.beginSection(sectionName);
+    }
+
+    @Override
+    public void endSection() {
+        Trace.endSection();
+    }
+
+}
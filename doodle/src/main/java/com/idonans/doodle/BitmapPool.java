@@ -0,0 +1,103 @@
+package com.idonans.doodle;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+
+import com.idonans.acommon.lang.CommonLog;
+
+import java.util.ArrayList;
+
+/**
+ * 按照尺寸复用的 ARGB_8888 Bitmap 缓存池, 用于关键帧和导出图像, 避免反复申请大块内存.
+ * 从缓存池中取出的 Bitmap 内容是不确定的，使用之前需要清空.
+ * <p/>
+ * 非线程安全，需要在同一个线程中使用(DoodleView 的渲染线程).
+ * Created by pengji on 16-7-28.
+ */
+class BitmapPool {
+
+    private static final String TAG = "BitmapPool";
+
+    // 缓存池中空闲 Bitmap 的总字节数上限, 至少可以缓存一个 Bitmap
+    private final long mMaxBytes;
+    private final ArrayList<Bitmap> mBitmaps = new ArrayList<>();
+    private long mBytes;
+
+    BitmapPool(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * 取出一个指定尺寸的 Bitmap, 缓存池中没有时新建
+     */
+    @NonNull
+    Bitmap obtain(int width, int height) {
+        for (int i = mBitmaps.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = mBitmaps.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                mBitmaps.remove(i);
+                mBytes -= getBytes(bitmap);
+                return bitmap;
+            }
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * 将不再使用的 Bitmap 放回缓存池, 超出缓存池容量时回收最早放入的 Bitmap
+     */
+    void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        if (bitmap.getConfig() != Bitmap.Config.ARGB_8888 || !bitmap.isMutable()) {
+            bitmap.recycle();
+            return;
+        }
+        mBitmaps.add(bitmap);
+        mBytes += getBytes(bitmap);
+        while (mBytes > mMaxBytes && mBitmaps.size() > 1) {
+            Bitmap evict = mBitmaps.remove(0);
+            mBytes -= getBytes(evict);
+            evict.recycle();
+        }
+    }
+
+    /**
+     * 回收所有尺寸与指定尺寸不同的 Bitmap, 例如画布尺寸变化之后
+     */
+    void trimToSize(int width, int height) {
+        for (int i = mBitmaps.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = mBitmaps.get(i);
+            if (bitmap.getWidth() != width || bitmap.getHeight() != height) {
+                mBitmaps.remove(i);
+                mBytes -= getBytes(bitmap);
+                bitmap.recycle();
+            }
+        }
+    }
+
+    /**
+     * 缓存池中空闲 Bitmap 的总字节数
+     */
+    long getBytes() {
+        return mBytes;
+    }
+
+    /**
+     * 回收缓存池中所有的 Bitmap
+     */
+    void clear() {
+        CommonLog.d(TAG + " clear " + mBitmaps.size() + " bitmaps, " + mBytes + " bytes");
+        for (Bitmap bitmap : mBitmaps) {
+            bitmap.recycle();
+        }
+        mBitmaps.clear();
+        mBytes = 0;
+    }
+
+    private static long getBytes(Bitmap bitmap) {
+        return 4L * bitmap.getWidth() * bitmap.getHeight();
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.idonans.doodle;
+
+import com.idonans.acommon.lang.CommonLog;
+import com.idonans.doodle.util.DoodleLog;
+
+/**
+ * 将 doodle-core 中的日志输出到 CommonLog
+ * Created by pengji on 16-7-30.
+ */
+class CommonLogPrinter implements DoodleLog.Printer {
+
+    @Override
+    public void d(String msg) {
+        CommonLog.d(msg);
+    }
+
+    @Override
+    public void e(String msg) {
+        CommonLog.e(msg);
+    }
+
+}
@@ -0,0 +1,375 @@
+package com.idonans.doodle;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.idonans.acommon.lang.CommonLog;
+import com.idonans.acommon.util.IOUtil;
+import com.idonans.doodle.editor.DoodleDataReader;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量将 dd 文件渲染为图片(PNG/WEBP 等). 解析和绘制在固定数量的工作线程中并行进行:
+ * 解析线程读取 dd 文件并放入有界队列，绘制线程从队列中取出并绘制和保存, 队列已满时解析线程等待(背压), 内存占用有上限.
+ * 每一个绘制线程使用各自的渲染器和 Bitmap 缓存池.
+ * <p/>
+ * 同一个实例同时只能执行一个批量任务.
+ * Created by pengji on 16-7-29.
+ */
+public class DoodleBatchRenderer {
+
+    private static final String TAG = "DoodleBatchRenderer";
+
+    /**
+     * 批量渲染的配置
+     */
+    public static class Options {
+        /**
+         * 输出目录, 输出文件名为 dd 文件名去掉扩展名之后加上图片格式的扩展名
+         */
+        public File outputDir;
+        public Bitmap.CompressFormat format = Bitmap.CompressFormat.PNG;
+        /**
+         * 图片压缩质量 [0, 100], PNG 格式忽略该值
+         */
+        public int quality = 90;
+        /**
+         * 输出图像相对于画布的缩放比例, 当 targetWidth 和 targetHeight 都大于 0 时忽略该值
+         */
+        public float scale = 1f;
+        /**
+         * 输出图像的最大尺寸, 画布按照宽高比完整的缩放到该尺寸之内
+         */
+        public int targetWidth;
+        public int targetHeight;
+        /**
+         * 解析线程数量
+         */
+        public int parseThreadCount = 1;
+        /**
+         * 绘制线程数量
+         */
+        public int renderThreadCount = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        /**
+         * 已经解析完成等待绘制的 dd 文件数量上限
+         */
+        public int queueSize = 4;
+        /**
+         * 每一个绘制线程的 Bitmap 缓存池中空闲 Bitmap 的总字节数上限
+         */
+        public long bitmapPoolBytes = 8 * 1024 * 1024;
+    }
+
+    /**
+     * 批量渲染的进度
+     */
+    public static class Progress {
+        public final int total;
+        public final int succeeded;
+        public final int failed;
+        /**
+         * 从开始到现在经过的时间(毫秒)
+         */
+        public final long elapsedTimeMs;
+
+        public Progress(int total, int succeeded, int failed, long elapsedTimeMs) {
+            this.total = total;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.elapsedTimeMs = elapsedTimeMs;
+        }
+
+        public int getFinished() {
+            return succeeded + failed;
+        }
+
+        /**
+         * 每秒完成的文件数量
+         */
+        public float getThroughput() {
+            return elapsedTimeMs > 0 ? getFinished() * 1000f / elapsedTimeMs : 0f;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + getFinished() + "/" + total + "] succeeded:" + succeeded + ", failed:" + failed
+                    + ", elapsed:" + elapsedTimeMs + "ms, throughput:" + getThroughput() + "/s";
+        }
+    }
+
+    public interface Callback {
+        /**
+         * 每完成一个文件回调一次, 在工作线程中回调, 需要自行处理线程同步
+         *
+         * @param ddFilePath 刚刚完成的 dd 文件
+         * @param outputFile 输出的图片, 失败时为 null
+         */
+        void onProgress(@NonNull Progress progress, @NonNull String ddFilePath, @Nullable File outputFile);
+    }
+
+    // 解析完成的 dd 文件, mDoodleData 为 null 表示解析失败. mDdFilePath 为 null 表示没有更多的文件
+    private static class Job {
+        private static final Job END = new Job(null, null);
+
+        private final String mDdFilePath;
+        private final DoodleData mDoodleData;
+
+        private Job(String ddFilePath, DoodleData doodleData) {
+            mDdFilePath = ddFilePath;
+            mDoodleData = doodleData;
+        }
+    }
+
+    private final Options mOptions;
+    private final AtomicBoolean mCanceled = new AtomicBoolean();
+
+    public DoodleBatchRenderer(@NonNull Options options) {
+        if (options.outputDir == null) {
+            throw new IllegalArgumentException("output dir not set");
+        }
+        if (options.parseThreadCount < 1 || options.renderThreadCount < 1 || options.queueSize < 1) {
+            throw new IllegalArgumentException("thread count and queue size must >= 1");
+        }
+        mOptions = options;
+    }
+
+    /**
+     * 取消正在执行的批量任务, 已经开始的文件会继续完成
+     */
+    public void cancel() {
+        mCanceled.set(true);
+    }
+
+    /**
+     * 渲染指定目录中的所有 dd 文件(不包含子目录), 阻塞直到全部完成. 返回最终的进度.
+     */
+    public Progress render(@NonNull File ddDir, @Nullable Callback callback) {
+        ArrayList<String> ddFilePaths = new ArrayList<>();
+        File[] files = ddDir.listFiles();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.isFile() && file.getName().endsWith(".dd")) {
+                    ddFilePaths.add(file.getAbsolutePath());
+                }
+            }
+        }
+        return render(ddFilePaths, callback);
+    }
+
+    /**
+     * 渲染指定的 dd 文件, 阻塞直到全部完成. 返回最终的进度.
+     * 等待过程中被中断时取消余下的文件，仍然等待所有的工作线程结束之后返回，并保留当前线程的中断状态.
+     */
+    public Progress render(@NonNull final List<String> ddFilePaths, @Nullable final Callback callback) {
+        mCanceled.set(false);
+        final long timeStart = System.currentTimeMillis();
+        final int total = ddFilePaths.size();
+        if (!mOptions.outputDir.isDirectory() && !mOptions.outputDir.mkdirs()) {
+            CommonLog.e(TAG + " fail to create output dir " + mOptions.outputDir);
+            return new Progress(total, 0, total, 0);
+        }
+
+        final BlockingQueue<Job> jobs = new ArrayBlockingQueue<>(mOptions.queueSize);
+        final AtomicInteger nextIndex = new AtomicInteger();
+        final AtomicInteger parsing = new AtomicInteger(mOptions.parseThreadCount);
+        final AtomicInteger succeeded = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+
+        ArrayList<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < mOptions.parseThreadCount; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int index;
+                        while (!mCanceled.get() && (index = nextIndex.getAndIncrement()) < total) {
+                            String ddFilePath = ddFilePaths.get(index);
+                            // 队列已满时等待绘制线程
+                            jobs.put(new Job(ddFilePath, parse(ddFilePath)));
+                        }
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    } finally {
+                        if (parsing.decrementAndGet() == 0) {
+                            // 最后一个解析线程结束时通知所有的绘制线程
+                            for (int j = 0; j < mOptions.renderThreadCount; j++) {
+                                putQuietly(jobs, Job.END);
+                            }
+                        }
+                    }
+                }
+            }, TAG + "-parse-" + i));
+        }
+
+        for (int i = 0; i < mOptions.renderThreadCount; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    BitmapPool bitmapPool = new BitmapPool(mOptions.bitmapPoolBytes);
+                    DoodleRenderer renderer = new DoodleRenderer(bitmapPool);
+                    try {
+                        while (true) {
+                            Job job = jobs.take();
+                            if (job == Job.END) {
+                                break;
+                            }
+                            if (mCanceled.get()) {
+                                // 已经取消, 丢弃队列中剩余的文件使解析线程尽快结束, 直到收到结束标志
+                                continue;
+                            }
+                            // 任意一个文件出错都不能结束绘制线程, 否则解析线程会在队列已满时一直等待
+                            File outputFile = null;
+                            try {
+                                outputFile = renderJob(job, renderer, bitmapPool);
+                            } catch (Throwable e) {
+                                e.printStackTrace();
+                            }
+                            if (outputFile != null) {
+                                succeeded.incrementAndGet();
+                            } else {
+                                failed.incrementAndGet();
+                            }
+                            if (callback != null) {
+                                Progress progress = new Progress(total, succeeded.get(), failed.get(), System.currentTimeMillis() - timeStart);
+                                try {
+                                    callback.onProgress(progress, job.mDdFilePath, outputFile);
+                                } catch (Throwable e) {
+                                    e.printStackTrace();
+                                }
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        e.printStackTrace();
+                    } finally {
+                        bitmapPool.clear();
+                    }
+                }
+            }, TAG + "-render-" + i));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        // 等待所有的工作线程结束之后再返回, 被中断时取消余下的文件, 工作线程完成已经开始的文件之后结束
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                    interrupted = true;
+                    cancel();
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        // 取消时没有开始的文件计入失败
+        int succeededCount = succeeded.get();
+        Progress progress = new Progress(total, succeededCount, total - succeededCount, System.currentTimeMillis() - timeStart);
+        CommonLog.d(TAG + " finish " + progress);
+        return progress;
+    }
+
+    @Nullable
+    private static DoodleData parse(String ddFilePath) {
+        DoodleDataReader.DoodleDataBuilder builder = new DoodleDataReader.DoodleDataBuilder();
+        if (!DoodleDataReader.read(ddFilePath, true, builder)) {
+            CommonLog.e(TAG + " fail to parse dd file " + ddFilePath);
+            return null;
+        }
+        DoodleData doodleData = builder.getDoodleData();
+        if (doodleData != null) {
+            // redo 区的内容不会被绘制
+            doodleData.drawStepDatasRedo = null;
+        }
+        return doodleData;
+    }
+
+    /**
+     * 绘制并保存, 成功返回输出的图片, 失败返回 null
+     */
+    @Nullable
+    private File renderJob(Job job, DoodleRenderer renderer, BitmapPool bitmapPool) {
+        if (job.mDoodleData == null) {
+            return null;
+        }
+
+        Bitmap bitmap;
+        if (mOptions.targetWidth > 0 && mOptions.targetHeight > 0) {
+            bitmap = renderer.render(job.mDoodleData, mOptions.targetWidth, mOptions.targetHeight);
+        } else {
+            bitmap = renderer.render(job.mDoodleData, mOptions.scale);
+        }
+        if (bitmap == null) {
+            return null;
+        }
+
+        File outputFile = new File(mOptions.outputDir, getOutputFileName(job.mDdFilePath));
+        FileOutputStream fos = null;
+        BufferedOutputStream bos = null;
+        try {
+            fos = new FileOutputStream(outputFile);
+            bos = new BufferedOutputStream(fos);
+            if (!bitmap.compress(mOptions.format, mOptions.quality, bos)) {
+                throw new IOException("fail to compress " + job.mDdFilePath);
+            }
+            bos.flush();
+            return outputFile;
+        } catch (Throwable e) {
+            e.printStackTrace();
+            outputFile.delete();
+        } finally {
+            IOUtil.closeQuietly(bos);
+            IOUtil.closeQuietly(fos);
+            // 保存之后图像可以被下一个文件复用
+            bitmapPool.release(bitmap);
+        }
+        return null;
+    }
+
+    private String getOutputFileName(String ddFilePath) {
+        String name = new File(ddFilePath).getName();
+        if (name.endsWith(".dd")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        String extension;
+        if (mOptions.format == Bitmap.CompressFormat.JPEG) {
+            extension = ".jpg";
+        } else if (mOptions.format == Bitmap.CompressFormat.PNG) {
+            extension = ".png";
+        } else {
+            extension = ".webp";
+        }
+        return name + extension;
+    }
+
+    private static void putQuietly(BlockingQueue<Job> jobs, Job job) {
+        while (true) {
+            try {
+                jobs.put(job);
+                return;
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+}
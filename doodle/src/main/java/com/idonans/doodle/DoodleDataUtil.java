@@ -0,0 +1,128 @@
+package com.idonans.doodle;
+
+import com.idonans.doodle.brush.Brush;
+import com.idonans.doodle.brush.Empty;
+import com.idonans.doodle.brush.LeavesPencil;
+import com.idonans.doodle.brush.Pencil;
+import com.idonans.doodle.drawstep.DrawStep;
+import com.idonans.doodle.drawstep.EmptyDrawStep;
+import com.idonans.doodle.drawstep.PointDrawStep;
+import com.idonans.doodle.drawstep.ScribbleDrawStep;
+
+import java.util.ArrayList;
+
+/**
+ * DoodleData 与绘画步骤和画笔之间的转换. DoodleData 位于不依赖 Android 的 doodle-core 中, 转换需要 Android 的绘制实现.
+ * Created by pengji on 16-7-30.
+ */
+public class DoodleDataUtil {
+
+    private DoodleDataUtil() {
+    }
+
+    public static ArrayList<DoodleData.DrawStepData> createDrawStepDatas(ArrayList<DrawStep> drawSteps) {
+        if (drawSteps == null) {
+            return null;
+        }
+
+        ArrayList<DoodleData.DrawStepData> drawStepDatas = new ArrayList<>(drawSteps.size());
+        for (DrawStep drawStep : drawSteps) {
+            drawStepDatas.add(createDrawStepData(drawStep));
+        }
+        return drawStepDatas;
+    }
+
+    public static DoodleData.DrawStepData createDrawStepData(DrawStep drawStep) {
+        if (drawStep == null) {
+            return null;
+        }
+
+        // 在判断时要注意先区分子类，再区分父类
+        if (drawStep instanceof ScribbleDrawStep) {
+            ScribbleDrawStep scribbleDrawStep = (ScribbleDrawStep) drawStep;
+            DoodleData.DrawStepData drawStepData = new DoodleData.DrawStepData();
+            drawStepData.type = DoodleData.DRAW_STEP_TYPE_SCRIBBLE;
+            drawStepData.brushData = createBrushData(scribbleDrawStep.getDrawBrush());
+            drawStepData.points = scribbleDrawStep.freezePoints();
+            return drawStepData;
+        } else if (drawStep instanceof PointDrawStep) {
+            PointDrawStep pointDrawStep = (PointDrawStep) drawStep;
+            DoodleData.DrawStepData drawStepData = new DoodleData.DrawStepData();
+            drawStepData.type = DoodleData.DRAW_STEP_TYPE_POINT;
+            drawStepData.brushData = createBrushData(pointDrawStep.getDrawBrush());
+            drawStepData.points = new PointBuffer(2);
+            drawStepData.points.add(pointDrawStep.getX(), pointDrawStep.getY());
+            return drawStepData;
+        } else if (drawStep instanceof EmptyDrawStep) {
+            DoodleData.DrawStepData drawStepData = new DoodleData.DrawStepData();
+            drawStepData.type = DoodleData.DRAW_STEP_TYPE_EMPTY;
+            return drawStepData;
+        } else {
+            throw new IllegalArgumentException("unknown draw step type " + drawStep);
+        }
+    }
+
+    /**
+     * 不创建子步骤, 根据绘画步骤的类型和坐标点数量计算子步骤数量, 与 DrawStep#resetSubStep 之后的子步骤数量一致
+     *
+     * @see DoodleData#getSubStepCount(int, int)
+     */
+    public static int getSubStepCount(DrawStep drawStep) {
+        // 在判断时要注意先区分子类，再区分父类
+        if (drawStep instanceof ScribbleDrawStep) {
+            return DoodleData.getSubStepCount(DoodleData.DRAW_STEP_TYPE_SCRIBBLE,
+                    ((ScribbleDrawStep) drawStep).getPoints().getPointCount());
+        } else if (drawStep instanceof PointDrawStep) {
+            return DoodleData.getSubStepCount(DoodleData.DRAW_STEP_TYPE_POINT, 1);
+        } else {
+            return 0;
+        }
+    }
+
+    public static DrawStep createDrawStep(DoodleData.DrawStepData drawStepData) {
+        if (drawStepData.type == DoodleData.DRAW_STEP_TYPE_SCRIBBLE) {
+            return new ScribbleDrawStep(createBrush(drawStepData.brushData), drawStepData.points.freeze());
+        } else if (drawStepData.type == DoodleData.DRAW_STEP_TYPE_POINT) {
+            return new PointDrawStep(createBrush(drawStepData.brushData), drawStepData.points.get(0), drawStepData.points.get(1));
+        } else if (drawStepData.type == DoodleData.DRAW_STEP_TYPE_EMPTY) {
+            return new EmptyDrawStep();
+        } else {
+            throw new IllegalArgumentException("unknown draw step type " + drawStepData.type);
+        }
+    }
+
+    public static DoodleData.BrushData createBrushData(Brush brush) {
+        if (brush == null) {
+            return null;
+        }
+
+        DoodleData.BrushData brushData = new DoodleData.BrushData();
+        // 在判断时要注意先区分子类，再区分父类
+        if (brush instanceof LeavesPencil) {
+            brushData.type = DoodleData.BRUSH_TYPE_LEAVES;
+        } else if (brush instanceof Pencil) {
+            brushData.type = DoodleData.BRUSH_TYPE_PENCIL;
+        } else if (brush instanceof Empty) {
+            brushData.type = DoodleData.BRUSH_TYPE_EMPTY;
+        } else {
+            throw new IllegalArgumentException("unknown brush type " + brush);
+        }
+        brushData.color = brush.color;
+        brushData.size = brush.size;
+        brushData.alpha = brush.alpha;
+        return brushData;
+    }
+
+    public static Brush createBrush(DoodleData.BrushData brushData) {
+        if (brushData.type == DoodleData.BRUSH_TYPE_LEAVES) {
+            return new LeavesPencil(brushData.color, brushData.size, brushData.alpha);
+        } else if (brushData.type == DoodleData.BRUSH_TYPE_PENCIL) {
+            return new Pencil(brushData.color, brushData.size, brushData.alpha);
+        } else if (brushData.type == DoodleData.BRUSH_TYPE_EMPTY) {
+            return new Empty();
+        } else {
+            throw new IllegalArgumentException("unknown brush type " + brushData.type);
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+package com.idonans.doodle;
+
+import java.util.Arrays;
+
+/**
+ * DoodleView 渲染线程的统计数据快照, 创建之后不再变化.
+ *
+ * @see DoodleView#getRenderMetrics()
+ * @see DoodleView#setRenderMetricsListener(DoodleView.RenderMetricsListener)
+ * Created by pengji on 16-7-30.
+ */
+public class DoodleMetrics {
+
+    /**
+     * 每一次 Draw 的耗时(纳秒), 从更新绘画缓冲区开始到提交 texture 结束
+     */
+    public final Histogram drawDurationNanos;
+    /**
+     * 每一次 Draw 重新绘制的绘画步骤数量
+     */
+    public final Histogram replayedStepsPerFrame;
+    /**
+     * 完成的 Draw 数量
+     */
+    public final long frameCount;
+    /**
+     * 完整的重新绘制缓冲区(非增量绘制)的次数
+     */
+    public final long fullRedrawCount;
+    /**
+     * 从关键帧开始绘制的次数
+     */
+    public final long keyFrameHitCount;
+    /**
+     * 没有可用的关键帧，从第一个绘画步骤开始绘制的次数
+     */
+    public final long keyFrameMissCount;
+    /**
+     * 重新绘制的绘画步骤总数
+     */
+    public final long replayedStepCount;
+    /**
+     * 最近一次 Draw 执行时渲染队列中等待执行的任务数量
+     */
+    public final int queueDepth;
+    public final int queueDepthMax;
+    /**
+     * 最近一次 Draw 之后画布, 关键帧, 播放关键帧和缓存池中的 Bitmap 占用的字节数
+     */
+    public final long bitmapBytes;
+
+    DoodleMetrics(Histogram drawDurationNanos, Histogram replayedStepsPerFrame,
+                  long frameCount, long fullRedrawCount, long keyFrameHitCount, long keyFrameMissCount,
+                  long replayedStepCount, int queueDepth, int queueDepthMax, long bitmapBytes) {
+        this.drawDurationNanos = drawDurationNanos;
+        this.replayedStepsPerFrame = replayedStepsPerFrame;
+        this.frameCount = frameCount;
+        this.fullRedrawCount = fullRedrawCount;
+        this.keyFrameHitCount = keyFrameHitCount;
+        this.keyFrameMissCount = keyFrameMissCount;
+        this.replayedStepCount = replayedStepCount;
+        this.queueDepth = queueDepth;
+        this.queueDepthMax = queueDepthMax;
+        this.bitmapBytes = bitmapBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "frames:" + frameCount + ", full redraw:" + fullRedrawCount
+                + ", key frame hit:" + keyFrameHitCount + ", miss:" + keyFrameMissCount
+                + ", replayed steps:" + replayedStepCount
+                + ", queue depth:" + queueDepth + ", max:" + queueDepthMax
+                + ", bitmap bytes:" + bitmapBytes
+                + ", draw ns [" + drawDurationNanos + "]"
+                + ", replayed steps per frame [" + replayedStepsPerFrame + "]";
+    }
+
+    /**
+     * 一次 Draw 的数据, 对象会被复用, 只在回调期间有效
+     */
+    public static class Frame {
+        /**
+         * 不需要关键帧: 至多只有一个绘画步骤直接绘制在背景上, 或者没有需要重新绘制的区域.
+         * 与是否是增量绘制无关
+         */
+        public static final int KEY_FRAME_NONE = 0;
+        /**
+         * 从关键帧开始绘制, 只重新绘制关键帧之后的绘画步骤. 增量绘制和完整的重新绘制都可能使用关键帧
+         */
+        public static final int KEY_FRAME_HIT = 1;
+        /**
+         * 需要之前的绘画步骤但是没有可用的关键帧, 从第一个绘画步骤开始重新绘制
+         */
+        public static final int KEY_FRAME_MISS = 2;
+
+        public long durationNanos;
+        public boolean fullRedraw;
+        /**
+         * KEY_FRAME_NONE, KEY_FRAME_HIT 或者 KEY_FRAME_MISS
+         */
+        public int keyFrame;
+        public int replayedSteps;
+        public int queueDepth;
+        public long bitmapBytes;
+    }
+
+    /**
+     * 以 2 的幂为边界的直方图: 第 i 个桶包含 [2^(i-1), 2^i) 范围内的值, 第 0 个桶只包含 0.
+     * 记录时不分配内存, 百分位数精确到桶的上界.
+     */
+    public static class Histogram {
+
+        private static final int BUCKET_COUNT = 64;
+
+        private final long[] mCounts;
+        private long mCount;
+        private long mSum;
+        private long mMin = Long.MAX_VALUE;
+        private long mMax;
+
+        Histogram() {
+            mCounts = new long[BUCKET_COUNT];
+        }
+
+        private Histogram(Histogram other) {
+            mCounts = Arrays.copyOf(other.mCounts, BUCKET_COUNT);
+            mCount = other.mCount;
+            mSum = other.mSum;
+            mMin = other.mMin;
+            mMax = other.mMax;
+        }
+
+        void record(long value) {
+            if (value < 0) {
+                value = 0;
+            }
+            mCounts[BUCKET_COUNT - Long.numberOfLeadingZeros(value)]++;
+            mCount++;
+            mSum += value;
+            mMin = Math.min(mMin, value);
+            mMax = Math.max(mMax, value);
+        }
+
+        void reset() {
+            Arrays.fill(mCounts, 0L);
+            mCount = 0;
+            mSum = 0;
+            mMin = Long.MAX_VALUE;
+            mMax = 0;
+        }
+
+        Histogram copy() {
+            return new Histogram(this);
+        }
+
+        public int getBucketCount() {
+            return BUCKET_COUNT;
+        }
+
+        /**
+         * 第 index 个桶中的值的数量
+         */
+        public long getBucketValueCount(int index) {
+            return mCounts[index];
+        }
+
+        /**
+         * 第 index 个桶的上界(不包含)
+         */
+        public long getBucketUpperBound(int index) {
+            return index >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << index;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getSum() {
+            return mSum;
+        }
+
+        public long getMin() {
+            return mCount > 0 ? mMin : 0L;
+        }
+
+        public long getMax() {
+            return mMax;
+        }
+
+        public long getMean() {
+            return mCount > 0 ? mSum / mCount : 0L;
+        }
+
+        /**
+         * 指定百分位 [0, 1] 的值所在的桶的上界, 不超过最大值
+         */
+        public long getPercentile(float percentile) {
+            if (mCount == 0) {
+                return 0L;
+            }
+            long target = Math.max(1L, (long) Math.ceil(mCount * percentile));
+            long accumulated = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                accumulated += mCounts[i];
+                if (accumulated >= target) {
+                    return Math.min(getBucketUpperBound(i), mMax);
+                }
+            }
+            return mMax;
+        }
+
+        @Override
+        public String toString() {
+            return "count:" + mCount + ", mean:" + getMean() + ", p50:" + getPercentile(0.5f)
+                    + ", p90:" + getPercentile(0.9f) + ", p99:" + getPercentile(0.99f) + ", max:" + mMax;
+        }
+    }
+
+}
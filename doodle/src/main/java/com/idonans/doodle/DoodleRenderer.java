@@ -0,0 +1,156 @@
+package com.idonans.doodle;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.PorterDuff;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.idonans.acommon.lang.CommonLog;
+import com.idonans.doodle.drawstep.DrawStep;
+import com.idonans.doodle.drawstep.DrawStepBuilder;
+import com.idonans.doodle.editor.DoodleDataReader;
+
+/**
+ * 不依赖 DoodleView 的涂鸦渲染器, 可以在任意线程中将 DoodleData 或者 dd 文件绘制为 Bitmap, 例如批量生成缩略图.
+ * 与 DoodleView 一样使用绘画步骤的 DrawStep#onDraw 绘制, 只绘制渲染区的绘画步骤, redo 区的内容被忽略.
+ * <p/>
+ * 非线程安全, 多个线程同时渲染时每个线程使用各自的渲染器.
+ * Created by pengji on 16-7-29.
+ */
+public class DoodleRenderer {
+
+    private static final String TAG = "DoodleRenderer";
+
+    // 输出图像使用的缓存池, 为 null 时总是新建 Bitmap
+    @Nullable
+    private final BitmapPool mBitmapPool;
+
+    // 正在绘制的图像, 只在一次渲染期间有效
+    private Bitmap mBitmap;
+    private Canvas mCanvas;
+
+    public DoodleRenderer() {
+        this(null);
+    }
+
+    DoodleRenderer(@Nullable BitmapPool bitmapPool) {
+        mBitmapPool = bitmapPool;
+    }
+
+    /**
+     * 计算将指定尺寸的画布完整的缩放到目标尺寸之内时使用的比例(保持宽高比)
+     */
+    public static float getScaleToFit(int width, int height, int targetWidth, int targetHeight) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("size error [" + width + ", " + height + "]");
+        }
+        return Math.min(1f * targetWidth / width, 1f * targetHeight / height);
+    }
+
+    /**
+     * 按照指定比例绘制 DoodleData, 输出图像的尺寸是画布尺寸乘以该比例. 失败时返回 null.
+     */
+    @Nullable
+    public Bitmap render(@NonNull DoodleData doodleData, float scale) {
+        try {
+            Canvas canvas = createCanvas(doodleData.width, doodleData.height, doodleData.backgroundColor, scale);
+            if (doodleData.drawStepDatas != null) {
+                for (DoodleData.DrawStepData drawStepData : doodleData.drawStepDatas) {
+                    if (drawStepData == null) {
+                        continue;
+                    }
+                    DoodleDataUtil.createDrawStep(drawStepData).onDraw(canvas);
+                }
+            }
+            return finish();
+        } catch (Throwable e) {
+            e.printStackTrace();
+            recycle();
+        }
+        return null;
+    }
+
+    /**
+     * 将 DoodleData 完整的绘制到目标尺寸之内(保持宽高比). 失败时返回 null.
+     */
+    @Nullable
+    public Bitmap render(@NonNull DoodleData doodleData, int targetWidth, int targetHeight) {
+        return render(doodleData, getScaleToFit(doodleData.width, doodleData.height, targetWidth, targetHeight));
+    }
+
+    /**
+     * 从 dd 文件中流式读取并绘制, 每一个绘画步骤读取完成之后立即绘制，不会构建完整的 DoodleData. 失败时返回 null.
+     */
+    @Nullable
+    public Bitmap render(@NonNull String ddFilePath, final float scale) {
+        boolean success = DoodleDataReader.read(ddFilePath, true, new DrawStepBuilder() {
+            @Override
+            public void onHeader(int width, int height, int backgroundColor) {
+                createCanvas(width, height, backgroundColor, scale);
+            }
+
+            @Override
+            protected void onDrawStep(boolean redo, DrawStep drawStep) {
+                if (redo) {
+                    return;
+                }
+                if (mCanvas == null) {
+                    throw new IllegalStateException("header not found");
+                }
+                drawStep.onDraw(mCanvas);
+            }
+        });
+
+        if (success && mBitmap != null) {
+            return finish();
+        }
+        CommonLog.e(TAG + " fail to render dd file " + ddFilePath);
+        recycle();
+        return null;
+    }
+
+    private Canvas createCanvas(int width, int height, int backgroundColor, float scale) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("size error [" + width + ", " + height + "]");
+        }
+        if (scale <= 0) {
+            throw new IllegalArgumentException("scale must > 0, " + scale);
+        }
+        int bitmapWidth = Math.max(1, Math.round(width * scale));
+        int bitmapHeight = Math.max(1, Math.round(height * scale));
+
+        recycle();
+        mBitmap = mBitmapPool != null
+                ? mBitmapPool.obtain(bitmapWidth, bitmapHeight)
+                : Bitmap.createBitmap(bitmapWidth, bitmapHeight, Bitmap.Config.ARGB_8888);
+        // 缓存池中的图像内容不确定，直接用背景色覆盖. 画布坐标按照比例缩放, 绘画步骤仍然使用原始画布的坐标
+        mCanvas = new Canvas(mBitmap);
+        mCanvas.drawColor(backgroundColor, PorterDuff.Mode.SRC);
+        mCanvas.scale(1f * bitmapWidth / width, 1f * bitmapHeight / height);
+        return mCanvas;
+    }
+
+    private Bitmap finish() {
+        Bitmap bitmap = mBitmap;
+        mBitmap = null;
+        mCanvas = null;
+        return bitmap;
+    }
+
+    /**
+     * 渲染失败时放弃正在绘制的图像
+     */
+    private void recycle() {
+        if (mBitmap != null) {
+            if (mBitmapPool != null) {
+                mBitmapPool.release(mBitmap);
+            } else {
+                mBitmap.recycle();
+            }
+        }
+        mBitmap = null;
+        mCanvas = null;
+    }
+
+}
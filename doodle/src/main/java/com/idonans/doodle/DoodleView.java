@@ -7,6 +7,8 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.SurfaceTexture;
 import android.os.Build;
 import android.support.annotation.NonNull;
@@ -14,6 +16,7 @@ import android.support.annotation.Nullable;
 import android.support.v4.view.GestureDetectorCompat;
 import android.support.v4.view.MotionEventCompat;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.GestureDetector;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
@@ -32,16 +35,39 @@ import com.idonans.acommon.util.ViewUtil;
 import com.idonans.doodle.brush.Brush;
 import com.idonans.doodle.brush.Empty;
 import com.idonans.doodle.drawstep.DrawStep;
+import com.idonans.doodle.drawstep.DrawStepBuilder;
+import com.idonans.doodle.editor.DoodleDataEditor;
+import com.idonans.doodle.editor.DoodleDataReader;
+import com.idonans.doodle.editor.v2.DoodleDataMappedReader;
+import com.idonans.doodle.util.DoodleLog;
+import com.idonans.doodle.util.DoodleTrace;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
  * 涂鸦板
+ * <p/>
+ * 触摸事件在 ui 线程中写入触摸采样缓冲区, 渲染线程批量取出, 转换为复用的绘画手势并交给当前的绘画步骤处理,
+ * 这一过程在稳定状态下不分配对象. 每一批触摸采样和每一次绘制仍然需要将复用的任务放入渲染队列(acommon 的 TaskQueue),
+ * 队列入队本身可能分配对象, 不在该保证的范围之内.
  * Created by idonans on 16-5-10.
  */
 public class DoodleView extends FrameLayout {
 
+    /**
+     * 关键帧缓存默认可以使用的内存(字节)
+     */
+    public static final long KEY_FRAME_MEMORY_LIMIT_DEFAULT = 32 * 1024 * 1024;
+    /**
+     * 新增关键帧时，相邻关键帧之间默认至少间隔的绘画步骤数量
+     */
+    public static final int KEY_FRAME_STEP_INTERVAL_DEFAULT = 8;
+
     public DoodleView(Context context) {
         super(context);
         init();
@@ -65,6 +91,15 @@ public class DoodleView extends FrameLayout {
 
     private static final String TAG = "DoodleView";
 
+    static {
+        // doodle-core 中的日志输出到 CommonLog
+        DoodleLog.setPrinter(new CommonLogPrinter());
+        // 追踪区间输出到 android.os.Trace, 已经设置了其它 Tracer 时不覆盖
+        if (DoodleTrace.getTracer() == null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            DoodleTrace.setTracer(new AndroidTracer());
+        }
+    }
+
     @NonNull
     private View mLoadingView;
 
@@ -106,6 +141,52 @@ public class DoodleView extends FrameLayout {
         mRender.setCanvasBackgroundColor(color);
     }
 
+    /**
+     * 设置关键帧缓存可以使用的内存(字节). 关键帧越多，undo 时需要重新绘制的绘画步骤越少.
+     * 关键帧的数量由该内存限制和画布的尺寸决定，但至少保留 2 个关键帧.
+     *
+     * @see #KEY_FRAME_MEMORY_LIMIT_DEFAULT
+     */
+    public void setKeyFrameMemoryLimit(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("key frame memory limit must >= 0");
+        }
+        mRender.setKeyFrameMemoryLimit(bytes);
+    }
+
+    public long getKeyFrameMemoryLimit() {
+        return mRender.mKeyFrameMemoryLimit;
+    }
+
+    /**
+     * 设置新增关键帧时，相邻关键帧之间至少间隔的绘画步骤数量. 当关键帧数量达到内存限制时，
+     * 关键帧会在整个绘画历史中重新分布，间隔会自动变大.
+     *
+     * @see #KEY_FRAME_STEP_INTERVAL_DEFAULT
+     */
+    public void setKeyFrameStepInterval(int stepInterval) {
+        if (stepInterval < 1) {
+            throw new IllegalArgumentException("key frame step interval must >= 1");
+        }
+        mRender.mKeyFrameStepInterval = stepInterval;
+    }
+
+    public int getKeyFrameStepInterval() {
+        return mRender.mKeyFrameStepInterval;
+    }
+
+    /**
+     * 设置是否与显示器的垂直同步信号对齐绘制. 开启之后每一帧至多绘制一次，快速绘画时多次手势更新会合并到同一帧中.
+     * 默认关闭，此时绘制请求仍然会合并，但不等待垂直同步信号.
+     */
+    public void setDrawOnVsync(boolean drawOnVsync) {
+        mRender.mDrawOnVsync = drawOnVsync;
+    }
+
+    public boolean isDrawOnVsync() {
+        return mRender.mDrawOnVsync;
+    }
+
     /**
      * 判断当前是否处于 loading 状态，例如当 doodle 初始化或者恢复数据时，会处于 loading 状态.
      */
@@ -182,6 +263,56 @@ public class DoodleView extends FrameLayout {
         return true;
     }
 
+    public interface RenderMetricsListener {
+        /**
+         * 每一次 Draw 完成之后在渲染线程中回调, frame 对象会被复用, 只在回调期间有效. 不能执行耗时操作
+         */
+        void onFrameMetrics(@NonNull DoodleMetrics.Frame frame);
+    }
+
+    /**
+     * 获取渲染线程的统计数据快照, 可以在任意线程中调用
+     */
+    @NonNull
+    public DoodleMetrics getRenderMetrics() {
+        return mRender.mRenderMetrics.snapshot();
+    }
+
+    /**
+     * 清空累计的渲染统计数据
+     */
+    public void resetRenderMetrics() {
+        mRender.mRenderMetrics.reset();
+    }
+
+    /**
+     * 设置每一帧的渲染统计数据的监听, 为 null 时取消
+     */
+    public void setRenderMetricsListener(@Nullable RenderMetricsListener renderMetricsListener) {
+        mRender.mRenderMetrics.setListener(renderMetricsListener);
+    }
+
+    /**
+     * 触摸事件回放(androidTest 中的 DoodleTouchReplayer)使用, 在渲染线程中回调
+     */
+    interface TouchFrameListener {
+        /**
+         * 一次 Draw 执行完毕, 此时前 touchEventCount 个触摸事件的内容都已经绘制到 texture 上
+         */
+        void onTouchFrame(int touchEventCount);
+    }
+
+    void setTouchFrameListener(@Nullable TouchFrameListener touchFrameListener) {
+        mRender.mTouchFrameListener = touchFrameListener;
+    }
+
+    /**
+     * 已经交给渲染线程处理的触摸事件数量
+     */
+    int getTouchEventCount() {
+        return mRender.mTouchEventCount;
+    }
+
     /**
      * 根据指定宽高比将 width, height 调整为最佳尺寸 (不超出范围并且宽高比完美匹配)
      */
@@ -341,6 +472,33 @@ public class DoodleView extends FrameLayout {
         mRender.load(doodleData);
     }
 
+    /**
+     * 从 dd 文件中流式载入数据, 解析过程中直接创建绘画步骤，不会构建完整的 DoodleData.
+     * 这是一个异步载入的过程，期间会显示 loading 视图. 载入结果在 ui 线程中回调, 载入失败时画板会被清空.
+     *
+     * @param asRedo 如果为 true, 渲染区的绘画步骤按照倒序全部载入到 redo 中, redo 区的内容被忽略(用于播放)
+     */
+    public void load(String ddFilePath, boolean ignoreEmptyStep, boolean asRedo, @Nullable final ActionCallback callback) {
+        if (ddFilePath == null) {
+            return;
+        }
+        postShowLoading();
+        mRender.load(ddFilePath, ignoreEmptyStep, asRedo, new ActionCallback() {
+            @Override
+            public void onActionResult(final boolean success) {
+                if (callback == null) {
+                    return;
+                }
+                Threads.runOnUi(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onActionResult(success);
+                    }
+                });
+            }
+        });
+    }
+
     /**
      * 是否可以前进, undo 之后的反向恢复. 在 ui 线程中回调.
      */
@@ -448,6 +606,82 @@ public class DoodleView extends FrameLayout {
         });
     }
 
+    /**
+     * for player. 按照绘制时间预算单步恢复, 恢复的子步骤数量根据最近的绘制耗时估算, 使得下一次绘制大约在 budgetNanos 之内完成.
+     * 回调的 value 是实际恢复的子步骤数量.
+     */
+    public void redoByFrameBudget(final long budgetNanos, final ActionCallback2 callback2) {
+        mRender.redoByFrameBudget(budgetNanos, new ActionCallback2() {
+            @Override
+            public void onActionResult(final boolean success, final int value) {
+                Threads.runOnUi(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback2.onActionResult(success, value);
+                    }
+                });
+                if (success) {
+                    mRender.postInvalidate();
+                }
+            }
+        });
+    }
+
+    /**
+     * for player. 播放的总长度(子步骤总数), 在载入时计算. 可以在 ui 线程中直接调用, 没有载入播放数据时返回 0.
+     */
+    public int getPlayDuration() {
+        return mRender.getPlayDuration();
+    }
+
+    /**
+     * for player. 当前的播放位置(已经恢复的子步骤总数). 可以在 ui 线程中直接调用, 没有载入播放数据时返回 0.
+     */
+    public int getPlayPosition() {
+        return mRender.getPlayPosition();
+    }
+
+    /**
+     * for player. 移动到指定的播放位置(已经恢复的子步骤总数), 优先从播放过程中记录的播放关键帧恢复, 只需要单步恢复余下的部分.
+     * 回调的 value 是实际到达的位置. 如果当前的绘画历史不是通过单步恢复构建的(例如编辑过), 不能移动, 回调 false.
+     */
+    public void seekTo(final int position, final ActionCallback2 callback2) {
+        mRender.seekTo(position, new ActionCallback2() {
+            @Override
+            public void onActionResult(final boolean success, final int value) {
+                Threads.runOnUi(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback2.onActionResult(success, value);
+                    }
+                });
+                if (success) {
+                    mRender.postInvalidate();
+                }
+            }
+        });
+    }
+
+    /**
+     * for player. 相对于当前位置移动指定的子步骤数量(带方向), 优先从播放关键帧恢复. 回调的 value 是实际移动的数量(带方向).
+     */
+    public void seekBy(final int seekSize, final ActionCallback2 callback2) {
+        mRender.seekBy(seekSize, new ActionCallback2() {
+            @Override
+            public void onActionResult(final boolean success, final int value) {
+                Threads.runOnUi(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback2.onActionResult(success, value);
+                    }
+                });
+                if (success) {
+                    mRender.postInvalidate();
+                }
+            }
+        });
+    }
+
     public interface SaveAsBitmapCallback {
         void onSavedAsBitmap(Bitmap bitmap);
     }
@@ -517,12 +751,60 @@ public class DoodleView extends FrameLayout {
 
         private int mCanvasBackgroundColor = Color.WHITE;
 
+        // 关键帧缓存可以使用的内存(字节)
+        private volatile long mKeyFrameMemoryLimit = KEY_FRAME_MEMORY_LIMIT_DEFAULT;
+        // 新增关键帧时，相邻关键帧之间至少间隔的绘画步骤数量
+        private volatile int mKeyFrameStepInterval = KEY_FRAME_STEP_INTERVAL_DEFAULT;
+
+        // 缓存池中空闲 Bitmap 的总字节数上限
+        private static final long BITMAP_POOL_BYTES_MAX = 16 * 1024 * 1024;
+        /**
+         * 关键帧和导出图像使用的 Bitmap 缓存池, 只在 mTaskQueue 中使用
+         */
+        private final BitmapPool mBitmapPool = new BitmapPool(BITMAP_POOL_BYTES_MAX);
+
         /**
          * 所有与画布数据相关的操作都使用该队列处理， 如绘画手势（缩放和移动手势除外），刷新，undo, redo, 数据保存与恢复等。
          */
         private final TaskQueue mTaskQueue = new TaskQueue(1);
+        // 渲染队列中等待执行和正在执行的任务数量
+        private final AtomicInteger mPendingTaskCount = new AtomicInteger();
+        private final RenderMetrics mRenderMetrics = new RenderMetrics();
+
+        // 交给渲染线程处理的触摸事件数量, 只在 ui 线程中修改
+        private volatile int mTouchEventCount;
+        // 已经取出采样的触摸事件数量, 只在渲染线程中使用
+        private int mDispatchedTouchEventCount;
+        @Nullable
+        private volatile TouchFrameListener mTouchFrameListener;
+
+        // ui 线程写入，渲染线程批量取出的触摸采样
+        private final TouchSampleRing mTouchSampleRing = new TouchSampleRing(4096);
+        // 是否已经有一个等待执行的 TouchSampleDispatcher
+        private final AtomicBoolean mTouchSamplePending = new AtomicBoolean();
+        private final TouchSampleDispatcher mTouchSampleDispatcher = new TouchSampleDispatcher();
+        // 缓冲区已满时放弃的采样数量, 只在 ui 线程中使用
+        private int mTouchSampleDropped;
+
+        // 是否已经有一个等待执行的 Draw
+        private final AtomicBoolean mDrawPending = new AtomicBoolean();
+        private final Draw mDraw = new Draw();
+        // 是否在垂直同步信号到来时才提交 Draw
+        private volatile boolean mDrawOnVsync;
+        private final Choreographer.FrameCallback mDrawFrameCallback = new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                enqueue(mDraw);
+            }
+        };
+        private final Runnable mPostDrawFrameCallback = new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(mDrawFrameCallback);
+            }
+        };
 
-        private DoodleData mPendingDoodleData;
+        private DataLoader mPendingDataLoader;
 
         private final TwoPointScaleGestureDetector mCanvasScaleGestureDetector;
         private final GestureDetectorCompat mCanvasTranslationGestureDetectorCompat;
@@ -548,40 +830,81 @@ public class DoodleView extends FrameLayout {
             return mCanvasBackgroundColor;
         }
 
-        private void enqueue(Runnable runnable) {
-            this.mTaskQueue.enqueue(runnable);
+        private void setKeyFrameMemoryLimit(long bytes) {
+            mKeyFrameMemoryLimit = bytes;
+            enqueue(new RenderTask() {
+                @Override
+                protected void onRun() {
+                    if (mCanvasBuffer != null) {
+                        // 内存限制变小时，立即释放多余的关键帧
+                        mCanvasBuffer.trimFrames();
+                    }
+                }
+            });
+        }
+
+        private void enqueue(RenderTask task) {
+            mPendingTaskCount.incrementAndGet();
+            this.mTaskQueue.enqueue(task);
+        }
+
+        /**
+         * 渲染队列中的任务, 执行结束时更新等待执行的任务数量. 复用的任务(如 Draw)入队时不需要额外的包装对象.
+         */
+        private abstract class RenderTask implements Runnable {
+
+            @Override
+            public final void run() {
+                try {
+                    onRun();
+                } finally {
+                    mPendingTaskCount.decrementAndGet();
+                }
+            }
+
+            protected abstract void onRun();
         }
 
         /**
          * 载入数据, 当前画板的 canvas 可能还没有初始化完成
          */
-        private void load(@NonNull final DoodleData doodleData) {
-            enqueue(new Runnable() {
+        private void load(@NonNull DoodleData doodleData) {
+            load(new DoodleDataLoader(doodleData));
+        }
+
+        /**
+         * 从 dd 文件中流式载入数据, 当前画板的 canvas 可能还没有初始化完成
+         */
+        private void load(@NonNull String ddFilePath, boolean ignoreEmptyStep, boolean asRedo, @NonNull ActionCallback callback) {
+            load(new DdFileLoader(ddFilePath, ignoreEmptyStep, asRedo, callback));
+        }
+
+        private void load(@NonNull final DataLoader dataLoader) {
+            enqueue(new RenderTask() {
                 @Override
-                public void run() {
+                protected void onRun() {
                     if (mCanvasBuffer == null) {
                         // 画布还没有准备好，延迟恢复
-                        mPendingDoodleData = doodleData;
+                        mPendingDataLoader = dataLoader;
                         return;
                     }
 
                     // 恢复数据
                     CanvasBuffer canvasBufferOld = mCanvasBuffer;
                     mCanvasBuffer = null;
-                    mPendingDoodleData = null;
+                    mPendingDataLoader = null;
+                    // 旧画布的图像内存放回缓存池，新画布尺寸相同时可以直接复用
+                    canvasBufferOld.release();
 
-                    mCanvasBuffer = createCanvasBuffer(
-                            canvasBufferOld.mTextureWidth, canvasBufferOld.mTextureHeight,
-                            doodleData);
-                    setCanvasBackgroundColor(doodleData.backgroundColor);
+                    mCanvasBuffer = dataLoader.load(canvasBufferOld.mTextureWidth, canvasBufferOld.mTextureHeight);
                 }
             });
         }
 
         private void saveAsBitmap(@NonNull final SaveAsBitmapCallback callback) {
-            enqueue(new Runnable() {
+            enqueue(new RenderTask() {
                 @Override
-                public void run() {
+                protected void onRun() {
                     if (mCanvasBuffer == null) {
                         // 画布还没有准备好
                         callback.onSavedAsBitmap(null);
@@ -594,7 +917,8 @@ public class DoodleView extends FrameLayout {
                         return;
                     }
 
-                    Bitmap bitmap = Bitmap.createBitmap(mCanvasBuffer.mBitmapWidth, mCanvasBuffer.mBitmapHeight, Bitmap.Config.ARGB_8888);
+                    // 导出的图像交给调用者，不再放回缓存池
+                    Bitmap bitmap = mBitmapPool.obtain(mCanvasBuffer.mBitmapWidth, mCanvasBuffer.mBitmapHeight);
                     Canvas canvas = new Canvas(bitmap);
                     mCanvasBuffer.draw(clear(canvas));
                     callback.onSavedAsBitmap(bitmap);
@@ -603,9 +927,9 @@ public class DoodleView extends FrameLayout {
         }
 
         private void save(@NonNull final SaveDataActionCallback callback) {
-            enqueue(new Runnable() {
+            enqueue(new RenderTask() {
                 @Override
-                public void run() {
+                protected void onRun() {
                     if (mCanvasBuffer == null) {
                         // 画布还没有准备好
                         callback.onDataSaved(null);
@@ -619,10 +943,16 @@ public class DoodleView extends FrameLayout {
                     }
 
                     DoodleData doodleData = new DoodleData();
-                    doodleData.setBackgroundColor(getCanvasBackgroundColor());
-                    doodleData.setSize(mCanvasBuffer.mBitmapWidth, mCanvasBuffer.mBitmapHeight);
-                    doodleData.setDrawSteps(mCanvasBuffer.mDrawSteps);
-                    doodleData.setDrawStepsRedo(mCanvasBuffer.mDrawStepsRedo);
+                    DoodleTrace.beginSection("DoodleView.save");
+                    try {
+                        mCanvasBuffer.drainLazyRedo();
+                        doodleData.setBackgroundColor(getCanvasBackgroundColor());
+                        doodleData.setSize(mCanvasBuffer.mBitmapWidth, mCanvasBuffer.mBitmapHeight);
+                        doodleData.drawStepDatas = DoodleDataUtil.createDrawStepDatas(mCanvasBuffer.mDrawSteps);
+                        doodleData.drawStepDatasRedo = DoodleDataUtil.createDrawStepDatas(mCanvasBuffer.mDrawStepsRedo);
+                    } finally {
+                        DoodleTrace.endSection();
+                    }
                     callback.onDataSaved(doodleData);
                 }
             });
@@ -634,14 +964,16 @@ public class DoodleView extends FrameLayout {
                     doodleData.width, doodleData.height);
             if (doodleData.drawStepDatas != null) {
                 for (DoodleData.DrawStepData drawStepData : doodleData.drawStepDatas) {
-                    canvasBuffer.mDrawSteps.add(drawStepData.create());
+                    canvasBuffer.mDrawSteps.add(DoodleDataUtil.createDrawStep(drawStepData));
                 }
             }
             if (doodleData.drawStepDatasRedo != null) {
                 for (DoodleData.DrawStepData drawStepData : doodleData.drawStepDatasRedo) {
-                    canvasBuffer.mDrawStepsRedo.add(drawStepData.create());
+                    canvasBuffer.mDrawStepsRedo.add(DoodleDataUtil.createDrawStep(drawStepData));
                 }
             }
+            // 播放时间轴包含 redo 中的绘画步骤
+            canvasBuffer.onLoaded();
 
             ///////
             postHideLoading();
@@ -666,6 +998,205 @@ public class DoodleView extends FrameLayout {
             return canvasBuffer;
         }
 
+        /**
+         * 在 render 线程中载入数据并创建对应的 canvas buffer
+         */
+        private abstract class DataLoader {
+            CanvasBuffer load(int textureWidth, int textureHeight) {
+                DoodleTrace.beginSection("DoodleView.load");
+                try {
+                    return onLoad(textureWidth, textureHeight);
+                } finally {
+                    DoodleTrace.endSection();
+                }
+            }
+
+            abstract CanvasBuffer onLoad(int textureWidth, int textureHeight);
+        }
+
+        private class DoodleDataLoader extends DataLoader {
+
+            private final DoodleData mDoodleData;
+
+            private DoodleDataLoader(DoodleData doodleData) {
+                mDoodleData = doodleData;
+            }
+
+            @Override
+            CanvasBuffer onLoad(int textureWidth, int textureHeight) {
+                CanvasBuffer canvasBuffer = createCanvasBuffer(textureWidth, textureHeight, mDoodleData);
+                setCanvasBackgroundColor(mDoodleData.backgroundColor);
+                return canvasBuffer;
+            }
+        }
+
+        /**
+         * 从 dd 文件中流式载入, 读取到的绘画步骤直接添加到 canvas buffer 中
+         */
+        private class DdFileLoader extends DataLoader {
+
+            private final String mDdFilePath;
+            private final boolean mIgnoreEmptyStep;
+            private final boolean mAsRedo;
+            private final ActionCallback mCallback;
+
+            // 载入过程中创建的 canvas buffer 和背景色
+            private CanvasBuffer mCanvasBufferLoaded;
+            private int mBackgroundColorLoaded;
+
+            private DdFileLoader(String ddFilePath, boolean ignoreEmptyStep, boolean asRedo, ActionCallback callback) {
+                mDdFilePath = ddFilePath;
+                mIgnoreEmptyStep = ignoreEmptyStep;
+                mAsRedo = asRedo;
+                mCallback = callback;
+            }
+
+            @Override
+            CanvasBuffer onLoad(final int textureWidth, final int textureHeight) {
+                if (mAsRedo && DoodleDataEditor.getVersion(mDdFilePath) == 2) {
+                    // 版本 2 的文件使用内存映射的方式打开，绘画步骤在恢复时才解码
+                    DoodleDataMappedReader reader = DoodleDataMappedReader.open(mDdFilePath);
+                    if (reader != null) {
+                        return loadLazy(reader, textureWidth, textureHeight);
+                    }
+                }
+
+                boolean success = DoodleDataReader.read(mDdFilePath, mIgnoreEmptyStep, new DrawStepBuilder() {
+                    @Override
+                    public void onHeader(int width, int height, int backgroundColor) {
+                        mCanvasBufferLoaded = new CanvasBuffer(textureWidth, textureHeight, width, height);
+                        mBackgroundColorLoaded = backgroundColor;
+                    }
+
+                    @Override
+                    protected void onDrawStep(boolean redo, DrawStep drawStep) {
+                        if (mAsRedo) {
+                            if (!redo) {
+                                mCanvasBufferLoaded.mDrawStepsRedo.add(drawStep);
+                            }
+                        } else if (redo) {
+                            mCanvasBufferLoaded.mDrawStepsRedo.add(drawStep);
+                        } else {
+                            mCanvasBufferLoaded.mDrawSteps.add(drawStep);
+                        }
+                    }
+                });
+
+                CanvasBuffer canvasBuffer = mCanvasBufferLoaded;
+                mCanvasBufferLoaded = null;
+                if (success && canvasBuffer != null) {
+                    if (mAsRedo) {
+                        // redo 中的步骤是倒序的，最后一个元素是下一个要恢复的步骤
+                        Collections.reverse(canvasBuffer.mDrawStepsRedo);
+                    }
+                    canvasBuffer.onLoaded();
+                    postHideLoading();
+                    setCanvasBackgroundColor(mBackgroundColorLoaded);
+                } else {
+                    CommonLog.e(TAG + " fail to load dd file " + mDdFilePath);
+                    if (canvasBuffer != null) {
+                        canvasBuffer.release();
+                    }
+                    canvasBuffer = createCanvasBuffer(textureWidth, textureHeight);
+                    success = false;
+                }
+                mCallback.onActionResult(success);
+                return canvasBuffer;
+            }
+
+            private CanvasBuffer loadLazy(DoodleDataMappedReader reader, int textureWidth, int textureHeight) {
+                // 只记录渲染区中需要恢复的步骤的位置
+                final int drawStepCount = reader.getDrawStepCount();
+                int[] drawStepIndexes = new int[drawStepCount];
+                int size = 0;
+                for (int i = 0; i < drawStepCount; i++) {
+                    if (reader.isDrawStepRedo(i)) {
+                        continue;
+                    }
+                    if (mIgnoreEmptyStep && reader.getDrawStepType(i) == DoodleData.DRAW_STEP_TYPE_EMPTY) {
+                        continue;
+                    }
+                    drawStepIndexes[size++] = i;
+                }
+
+                CanvasBuffer canvasBuffer = new CanvasBuffer(textureWidth, textureHeight, reader.getWidth(), reader.getHeight());
+                canvasBuffer.mLazyRedoSteps = new LazyRedoSteps(reader, Arrays.copyOf(drawStepIndexes, size));
+                canvasBuffer.onLoaded();
+                postHideLoading();
+                setCanvasBackgroundColor(reader.getBackgroundColor());
+                mCallback.onActionResult(true);
+                return canvasBuffer;
+            }
+        }
+
+        /**
+         * 延迟解码的 redo 步骤, 只在需要恢复时才从 dd 文件中解码对应的绘画步骤 (用于播放)
+         */
+        private class LazyRedoSteps extends DrawStepBuilder {
+
+            private final DoodleDataMappedReader mReader;
+            // 按照恢复的顺序排列的绘画步骤位置
+            private final int[] mDrawStepIndexes;
+            private int mNext;
+
+            private DrawStep mDrawStepDecoded;
+
+            private LazyRedoSteps(DoodleDataMappedReader reader, int[] drawStepIndexes) {
+                mReader = reader;
+                mDrawStepIndexes = drawStepIndexes;
+            }
+
+            public boolean hasNext() {
+                return mNext < mDrawStepIndexes.length;
+            }
+
+            /**
+             * 还没有解码的绘画步骤数量
+             */
+            public int getRemainCount() {
+                return mDrawStepIndexes.length - mNext;
+            }
+
+            /**
+             * 不解码，直接从文件索引中计算之后第 offset 个绘画步骤的子步骤数量
+             */
+            public int getSubStepCount(int offset) {
+                int index = mDrawStepIndexes[mNext + offset];
+                return DoodleData.getSubStepCount(mReader.getDrawStepType(index), mReader.getPointCount(index));
+            }
+
+            /**
+             * 解码下一个需要恢复的绘画步骤, 如果解码失败，放弃余下的所有步骤并返回 null.
+             */
+            @Nullable
+            public DrawStep next() {
+                mDrawStepDecoded = null;
+                if (!mReader.read(mDrawStepIndexes[mNext], this)) {
+                    CommonLog.e(TAG + " fail to decode draw step " + mDrawStepIndexes[mNext]);
+                    clear();
+                    return null;
+                }
+                mNext++;
+                DrawStep drawStep = mDrawStepDecoded;
+                mDrawStepDecoded = null;
+                return drawStep;
+            }
+
+            public void clear() {
+                mNext = mDrawStepIndexes.length;
+            }
+
+            @Override
+            public void onHeader(int width, int height, int backgroundColor) {
+                // ignore
+            }
+
+            @Override
+            protected void onDrawStep(boolean redo, DrawStep drawStep) {
+                mDrawStepDecoded = drawStep;
+            }
+        }
+
         private class TwoPointScaleGestureDetector extends ScaleGestureDetector {
 
             private boolean mDownStart;
@@ -694,9 +1225,9 @@ public class DoodleView extends FrameLayout {
         }
 
         private void setAspectRatio(final int aspectWidth, final int aspectHeight) {
-            enqueue(new Runnable() {
+            enqueue(new RenderTask() {
                 @Override
-                public void run() {
+                protected void onRun() {
                     mAspectWidth = aspectWidth;
                     mAspectHeight = aspectHeight;
 
@@ -708,6 +1239,7 @@ public class DoodleView extends FrameLayout {
                     // 使用当前的 texture 重新构建 canvas buffer
                     CanvasBuffer canvasBufferOld = mCanvasBuffer;
                     mCanvasBuffer = null;
+                    canvasBufferOld.release();
                     mCanvasBuffer = createCanvasBuffer(canvasBufferOld.mTextureWidth, canvasBufferOld.mTextureHeight);
                     resumeDoodle();
                 }
@@ -715,16 +1247,19 @@ public class DoodleView extends FrameLayout {
         }
 
         private void init(final int textureWidth, final int textureHeight) {
-            enqueue(new Runnable() {
+            enqueue(new RenderTask() {
                 @Override
-                public void run() {
-                    if (mPendingDoodleData != null) {
-                        DoodleData doodleData = mPendingDoodleData;
+                protected void onRun() {
+                    if (mPendingDataLoader != null) {
+                        DataLoader dataLoader = mPendingDataLoader;
 
+                        if (mCanvasBuffer != null) {
+                            mCanvasBuffer.release();
+                        }
                         mCanvasBuffer = null;
-                        mPendingDoodleData = null;
+                        mPendingDataLoader = null;
 
-                        mCanvasBuffer = createCanvasBuffer(textureWidth, textureHeight, doodleData);
+                        mCanvasBuffer = dataLoader.load(textureWidth, textureHeight);
                         return;
                     }
 
@@ -744,15 +1279,35 @@ public class DoodleView extends FrameLayout {
 
         public void setTextureEnable(boolean textureEnable) {
             mTextureEnable = textureEnable;
+            if (!textureEnable) {
+                trimBitmapPool();
+            }
             resumeDoodle();
         }
 
+        /**
+         * texture 销毁之后回收缓存池中空闲的 Bitmap. 画布和关键帧中的 Bitmap 仍然保留, texture 恢复时不需要重新绘制历史
+         */
+        private void trimBitmapPool() {
+            enqueue(new RenderTask() {
+                @Override
+                protected void onRun() {
+                    if (!mTextureEnable) {
+                        mBitmapPool.clear();
+                    }
+                }
+            });
+        }
+
         private void resumeDoodle() {
-            enqueue(new Runnable() {
+            enqueue(new RenderTask() {
                 @Override
-                public void run() {
+                protected void onRun() {
                     CanvasBuffer canvasBuffer = mCanvasBuffer;
                     if (isAvailable()) {
+                        // 背景色或者 texture 可能已经变化，需要完整的重新绘制
+                        canvasBuffer.invalidateBuffer();
+                        canvasBuffer.invalidateTexture();
                         canvasBuffer.postInvalidate();
                         postInvalidate();
                         canvasBuffer.notifyUndoRedoChanged();
@@ -873,6 +1428,10 @@ public class DoodleView extends FrameLayout {
         private class TextureActionGestureListener implements GestureDetector.OnGestureListener {
             private static final String TAG = "Render$TextureActionGestureListener";
             private boolean mDownStart = false;
+            // 当前手势中是否已经写入了单指移动的开始位置
+            private boolean mScrollStart = false;
+            // 坐标变换使用的临时数组, 只在 ui 线程中使用
+            private final float[] mPoint = new float[2];
 
             @Override
             public boolean onDown(MotionEvent e) {
@@ -881,8 +1440,9 @@ public class DoodleView extends FrameLayout {
                 }
 
                 mDownStart = true;
+                mScrollStart = false;
 
-                enqueueGestureAction(new CancelGestureAction());
+                offerTouchSample(TouchSampleRing.TYPE_CANCEL, 0f, 0f);
                 return true;
             }
 
@@ -902,13 +1462,12 @@ public class DoodleView extends FrameLayout {
                     return false;
                 }
 
-                MotionEvent event = MotionEvent.obtain(e);
-                event.transform(canvasBuffer.getMatrixInvert());
+                mapPoint(canvasBuffer.getMatrixInvert(), e.getX(), e.getY());
 
-                CommonLog.d(TAG + " onSingleTapUp [" + e.getX() + ", " + e.getY() + "] -> [" + event.getX() + ", " + event.getY() + "]");
+                CommonLog.d(TAG + " onSingleTapUp [" + e.getX() + ", " + e.getY() + "] -> [" + mPoint[0] + ", " + mPoint[1] + "]");
 
-                enqueueGestureAction(new SinglePointGestureAction(event));
-                enqueueGestureAction(new CancelGestureAction());
+                offerTouchSample(TouchSampleRing.TYPE_SINGLE_POINT, mPoint[0], mPoint[1]);
+                offerTouchSample(TouchSampleRing.TYPE_CANCEL, 0f, 0f);
 
                 mDownStart = false;
                 return true;
@@ -927,24 +1486,29 @@ public class DoodleView extends FrameLayout {
                 }
 
                 if (e2.getPointerCount() > 1) {
-                    enqueueGestureAction(new CancelGestureAction());
+                    offerTouchSample(TouchSampleRing.TYPE_CANCEL, 0f, 0f);
                     mDownStart = false;
                     return false;
                 }
 
-                // 单指移动
+                // 单指移动, 所有坐标都变换到画布坐标系中
                 Matrix matrixInverse = canvasBuffer.getMatrixInvert();
-                MotionEvent downEvent = MotionEvent.obtain(e1);
-                MotionEvent currentEvent = MotionEvent.obtain(e2);
-
-                // down event 在此处变换时可能对应的点已经有偏差，需要确保在 down 到目前位置画布没有缩放或者移动
-                downEvent.transform(matrixInverse);
 
-                currentEvent.transform(matrixInverse);
-                enqueueGestureAction(new ScrollGestureAction(downEvent, currentEvent));
+                if (!mScrollStart) {
+                    // down 的位置在此处变换时可能对应的点已经有偏差，需要确保在 down 到目前位置画布没有缩放或者移动
+                    mapPoint(matrixInverse, e1.getX(), e1.getY());
+                    offerTouchSample(TouchSampleRing.TYPE_SCROLL_START, mPoint[0], mPoint[1]);
+                    mScrollStart = true;
+                }
 
-                // 在快速滑动时，需要避排队过多的手势事件，适当让事件等待绘画渲染完成，在下一次 scroll 中，可以从 history 中找回期间触发过的所有点。
-                Threads.sleepQuietly(Math.max(5L, canvasBuffer.getLastDrawingTime()));
+                // 在两次 ACTION_MOVE 之间可能有多个采样点，全部写入，渲染线程会批量取出并绘制，ui 线程不需要等待
+                int historySize = e2.getHistorySize();
+                for (int i = 0; i < historySize; i++) {
+                    mapPoint(matrixInverse, e2.getHistoricalX(i), e2.getHistoricalY(i));
+                    offerTouchSample(TouchSampleRing.TYPE_SCROLL_MOVE, mPoint[0], mPoint[1]);
+                }
+                mapPoint(matrixInverse, e2.getX(), e2.getY());
+                offerTouchSample(TouchSampleRing.TYPE_SCROLL_MOVE, mPoint[0], mPoint[1]);
 
                 return true;
             }
@@ -957,14 +1521,32 @@ public class DoodleView extends FrameLayout {
             public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
                 return false;
             }
+
+            private void mapPoint(Matrix matrix, float x, float y) {
+                mPoint[0] = x;
+                mPoint[1] = y;
+                matrix.mapPoints(mPoint);
+            }
         }
 
-        private class Draw implements Runnable {
+        private class Draw extends RenderTask {
 
             private static final String TAG = "Render$Draw";
 
             @Override
-            public void run() {
+            protected void onRun() {
+                DoodleTrace.beginSection("DoodleView.Draw");
+                try {
+                    draw();
+                } finally {
+                    DoodleTrace.endSection();
+                }
+            }
+
+            private void draw() {
+                // 之后的绘制请求需要一个新的 Draw
+                mDrawPending.set(false);
+
                 CanvasBuffer canvasBuffer = mCanvasBuffer;
                 if (!isAvailable()) {
                     CommonLog.d(TAG + " available is false, ignore");
@@ -972,59 +1554,148 @@ public class DoodleView extends FrameLayout {
                 }
 
                 Canvas canvas = null;
+                final long timeStart = System.nanoTime();
                 try {
-                    canvas = mTextureView.lockCanvas();
+                    // 先更新绘画缓冲区，得到需要重新绘制的区域
+                    Rect dirty = canvasBuffer.updateBuffer();
+                    if (dirty == null) {
+                        canvas = mTextureView.lockCanvas();
+                    } else if (dirty.isEmpty()) {
+                        CommonLog.d(TAG + " nothing changed, ignore");
+                        return;
+                    } else {
+                        // 只锁定变化的区域, 锁定之后 dirty 可能被扩大, canvas 的裁剪区域与之一致
+                        canvas = mTextureView.lockCanvas(dirty);
+                    }
                     if (canvas == null) {
                         CommonLog.d(TAG + " canvas is null, ignore");
+                        canvasBuffer.invalidateTexture();
                         return;
                     }
 
                     // 将缓冲区中的内容绘画到 canvas 上
-                    long timeStart = System.currentTimeMillis();
                     // 清空背景并重新绘制
-                    canvasBuffer.draw(clear(canvas));
-                    long lastDrawingTime = System.currentTimeMillis() - timeStart;
+                    canvasBuffer.drawBuffer(clear(canvas));
+                    long lastDrawingTime = (System.nanoTime() - timeStart) / 1000000L;
                     canvasBuffer.setLastDrawingTime(lastDrawingTime);
                 } catch (Exception e) {
                     e.printStackTrace();
+                    // texture 中的内容已经不确定
+                    canvasBuffer.invalidateTexture();
+                    canvasBuffer.invalidateBuffer();
                 } finally {
                     if (canvas != null) {
                         mTextureView.unlockCanvasAndPost(canvas);
+                        // 不包含正在执行的 Draw
+                        mRenderMetrics.onDraw(System.nanoTime() - timeStart,
+                                mPendingTaskCount.get() - 1, canvasBuffer.getBitmapBytes());
+                    }
+                    TouchFrameListener touchFrameListener = mTouchFrameListener;
+                    if (touchFrameListener != null) {
+                        touchFrameListener.onTouchFrame(mDispatchedTouchEventCount);
                     }
                 }
             }
 
         }
 
+        /**
+         * 请求重新绘制. 队列中至多只有一个等待执行的 Draw, 在它执行之前的所有请求会合并为一次绘制.
+         * 开启垂直同步时，Draw 在下一帧的垂直同步信号到来时才进入队列.
+         */
         public void postInvalidate() {
-            this.enqueue(new Draw());
+            if (!mDrawPending.compareAndSet(false, true)) {
+                // 已经有一个等待执行的 Draw, 它会绘制最新的内容
+                return;
+            }
+            if (mDrawOnVsync) {
+                Threads.runOnUi(mPostDrawFrameCallback);
+            } else {
+                this.enqueue(mDraw);
+            }
+        }
+
+        /**
+         * ui 线程调用. 写入一个触摸采样并请求渲染线程处理, 从不阻塞.
+         */
+        private void offerTouchSample(int type, float x, float y) {
+            if (!mTouchSampleRing.offer(type, x, y)) {
+                // 渲染线程严重滞后，放弃该采样
+                mTouchSampleDropped++;
+                CommonLog.e(TAG + " touch sample ring is full, drop sample " + type + ", dropped " + mTouchSampleDropped);
+            }
+            if (mTouchSamplePending.compareAndSet(false, true)) {
+                enqueue(mTouchSampleDispatcher);
+            }
+            postInvalidate();
         }
 
-        public void enqueueGestureAction(final GestureAction gestureAction) {
-            this.enqueue(new Runnable() {
+        /**
+         * 在渲染线程中批量取出触摸采样, 由 TouchSampleBatcher 转换为复用的绘画手势并交给当前的绘画步骤处理.
+         * 该对象本身也是复用的, 队列中至多只有一个等待执行的 TouchSampleDispatcher.
+         */
+        private class TouchSampleDispatcher extends RenderTask {
+
+            private static final String TAG = "Render$TouchSampleDispatcher";
+
+            // 当前正在处理的 canvas buffer, 为 null 时丢弃所有的采样
+            private CanvasBuffer mDispatchCanvasBuffer;
+            private boolean mChanged;
+
+            private final TouchSampleBatcher mTouchSampleBatcher = new TouchSampleBatcher() {
                 @Override
-                public void run() {
-                    CanvasBuffer canvasBuffer = mCanvasBuffer;
-                    if (!isAvailable()) {
-                        CommonLog.d(TAG + " available is false, ignore GestureAction " + gestureAction);
-                        return;
-                    }
-                    boolean changed = canvasBuffer.dispatchGestureAction(gestureAction);
-                    if (changed) {
-                        canvasBuffer.notifyUndoRedoChanged();
+                protected void onGestureAction(GestureAction gestureAction) {
+                    dispatch(gestureAction);
+                }
+            };
+
+            @Override
+            protected void onRun() {
+                // 之后写入的采样需要重新处理
+                mTouchSamplePending.set(false);
+
+                CanvasBuffer canvasBuffer = mCanvasBuffer;
+                if (!isAvailable()) {
+                    CommonLog.d(TAG + " available is false, ignore touch samples " + mTouchSampleRing.size());
+                    canvasBuffer = null;
+                }
+
+                mDispatchCanvasBuffer = canvasBuffer;
+                mChanged = false;
+                // 计数在采样写入之后才增加, 先读取计数再取出采样, 计数之内的触摸事件的采样都会被取出
+                final int touchEventCount = mTouchEventCount;
+                mTouchSampleRing.drain(mTouchSampleBatcher);
+                mDispatchedTouchEventCount = touchEventCount;
+                mTouchSampleBatcher.flush();
+                mDispatchCanvasBuffer = null;
+
+                if (mChanged) {
+                    canvasBuffer.notifyUndoRedoChanged();
+                }
+            }
+
+            private void dispatch(GestureAction gestureAction) {
+                if (mDispatchCanvasBuffer == null) {
+                    return;
+                }
+                DoodleTrace.beginSection("DoodleView.dispatchGestureAction");
+                try {
+                    if (mDispatchCanvasBuffer.dispatchGestureAction(gestureAction)) {
+                        mChanged = true;
                     }
+                } finally {
+                    DoodleTrace.endSection();
                 }
-            });
-            postInvalidate();
+            }
         }
 
         /**
          * 相关视图是否已经渲染完成
          */
         public void isInitOk(final ActionCallback callback) {
-            this.enqueue(new Runnable() {
+            this.enqueue(new RenderTask() {
                 @Override
-                public void run() {
+                protected void onRun() {
                     callback.onActionResult(isAvailable());
                 }
             });
@@ -1034,9 +1705,9 @@ public class DoodleView extends FrameLayout {
          * 是否可以回退
          */
         public void canUndo(final ActionCallback callback) {
-            this.enqueue(new Runnable() {
+            this.enqueue(new RenderTask() {
                 @Override
-                public void run() {
+                protected void onRun() {
                     CanvasBuffer canvasBuffer = mCanvasBuffer;
                     if (!isAvailable()) {
                         CommonLog.d(TAG + " available is false, ignore canUndo check, just callback with false.");
@@ -1053,9 +1724,9 @@ public class DoodleView extends FrameLayout {
          * 回退操作，回退成功，返回 true, 否则返回 false.
          */
         public void undo(final ActionCallback callback) {
-            this.enqueue(new Runnable() {
+            this.enqueue(new RenderTask() {
                 @Override
-                public void run() {
+                protected void onRun() {
                     CanvasBuffer canvasBuffer = mCanvasBuffer;
                     if (!isAvailable()) {
                         CommonLog.d(TAG + " available is false, ignore undo, just callback with false");
@@ -1063,6 +1734,8 @@ public class DoodleView extends FrameLayout {
                         return;
                     }
 
+                    // 整步回退之后不再是单步恢复构建的绘画历史
+                    canvasBuffer.invalidateSeekIndex();
                     callback.onActionResult(canvasBuffer.undo());
                 }
             });
@@ -1072,9 +1745,9 @@ public class DoodleView extends FrameLayout {
          * 是否可以前进, undo 之后的反向恢复
          */
         public void canRedo(final ActionCallback callback) {
-            this.enqueue(new Runnable() {
+            this.enqueue(new RenderTask() {
                 @Override
-                public void run() {
+                protected void onRun() {
                     CanvasBuffer canvasBuffer = mCanvasBuffer;
                     if (!isAvailable()) {
                         CommonLog.d(TAG + " available is false, ignore canRedo, just callback with false");
@@ -1091,9 +1764,9 @@ public class DoodleView extends FrameLayout {
          * 反向恢复，恢复成功，返回 true, 否则返回 false.
          */
         public void redo(final ActionCallback callback) {
-            this.enqueue(new Runnable() {
+            this.enqueue(new RenderTask() {
                 @Override
-                public void run() {
+                protected void onRun() {
                     CanvasBuffer canvasBuffer = mCanvasBuffer;
                     if (!isAvailable()) {
                         CommonLog.d(TAG + " available is false, ignore redo, just callback with false");
@@ -1101,15 +1774,16 @@ public class DoodleView extends FrameLayout {
                         return;
                     }
 
+                    canvasBuffer.invalidateSeekIndex();
                     callback.onActionResult(canvasBuffer.redo());
                 }
             });
         }
 
         public void canUndoByStep(final ActionCallback callback) {
-            this.enqueue(new Runnable() {
+            this.enqueue(new RenderTask() {
                 @Override
-                public void run() {
+                protected void onRun() {
                     CanvasBuffer canvasBuffer = mCanvasBuffer;
                     if (!isAvailable()) {
                         CommonLog.d(TAG + " available is false, ignore canUndoByStep, just callback with false");
@@ -1123,9 +1797,9 @@ public class DoodleView extends FrameLayout {
         }
 
         public void undoByStep(final int undoStepCount, final ActionCallback2 callback2) {
-            this.enqueue(new Runnable() {
+            this.enqueue(new RenderTask() {
                 @Override
-                public void run() {
+                protected void onRun() {
                     CanvasBuffer canvasBuffer = mCanvasBuffer;
                     if (!isAvailable()) {
                         CommonLog.d(TAG + " available is false, ignore undoByStep, just callback with false");
@@ -1140,9 +1814,9 @@ public class DoodleView extends FrameLayout {
         }
 
         public void canRedoByStep(final ActionCallback callback) {
-            this.enqueue(new Runnable() {
+            this.enqueue(new RenderTask() {
                 @Override
-                public void run() {
+                protected void onRun() {
                     CanvasBuffer canvasBuffer = mCanvasBuffer;
                     if (!isAvailable()) {
                         CommonLog.d(TAG + " available is false, ignore canRedoByStep, just callback with false");
@@ -1156,9 +1830,9 @@ public class DoodleView extends FrameLayout {
         }
 
         public void redoByStep(final int redoStepCount, final ActionCallback2 callback2) {
-            this.enqueue(new Runnable() {
+            this.enqueue(new RenderTask() {
                 @Override
-                public void run() {
+                protected void onRun() {
                     CanvasBuffer canvasBuffer = mCanvasBuffer;
                     if (!isAvailable()) {
                         CommonLog.d(TAG + " available is false, ignore redoByStep, just callback with false");
@@ -1172,18 +1846,102 @@ public class DoodleView extends FrameLayout {
             });
         }
 
+        public void redoByFrameBudget(final long budgetNanos, final ActionCallback2 callback2) {
+            this.enqueue(new RenderTask() {
+                @Override
+                protected void onRun() {
+                    CanvasBuffer canvasBuffer = mCanvasBuffer;
+                    if (!isAvailable()) {
+                        CommonLog.d(TAG + " available is false, ignore redoByFrameBudget, just callback with false");
+                        callback2.onActionResult(false, 0);
+                        return;
+                    }
+
+                    int count;
+                    DoodleTrace.beginSection("DoodleView.redoByFrameBudget");
+                    try {
+                        count = canvasBuffer.redoByFrameBudget(budgetNanos);
+                    } finally {
+                        DoodleTrace.endSection();
+                    }
+                    callback2.onActionResult(count > 0, count);
+                }
+            });
+        }
+
+        public int getPlayDuration() {
+            CanvasBuffer canvasBuffer = mCanvasBuffer;
+            return canvasBuffer != null ? canvasBuffer.getDuration() : 0;
+        }
+
+        public int getPlayPosition() {
+            CanvasBuffer canvasBuffer = mCanvasBuffer;
+            return canvasBuffer != null ? canvasBuffer.getPosition() : 0;
+        }
+
+        public void seekTo(final int position, final ActionCallback2 callback2) {
+            this.enqueue(new RenderTask() {
+                @Override
+                protected void onRun() {
+                    CanvasBuffer canvasBuffer = mCanvasBuffer;
+                    if (!isAvailable()) {
+                        CommonLog.d(TAG + " available is false, ignore seekTo, just callback with false");
+                        callback2.onActionResult(false, 0);
+                        return;
+                    }
+
+                    int positionSeeked;
+                    DoodleTrace.beginSection("DoodleView.seekTo");
+                    try {
+                        positionSeeked = canvasBuffer.seekTo(position);
+                    } finally {
+                        DoodleTrace.endSection();
+                    }
+                    callback2.onActionResult(positionSeeked >= 0, positionSeeked);
+                }
+            });
+        }
+
+        public void seekBy(final int seekSize, final ActionCallback2 callback2) {
+            this.enqueue(new RenderTask() {
+                @Override
+                protected void onRun() {
+                    CanvasBuffer canvasBuffer = mCanvasBuffer;
+                    if (!isAvailable()) {
+                        CommonLog.d(TAG + " available is false, ignore seekBy, just callback with false");
+                        callback2.onActionResult(false, 0);
+                        return;
+                    }
+
+                    int count;
+                    DoodleTrace.beginSection("DoodleView.seekBy");
+                    try {
+                        count = canvasBuffer.seekBy(seekSize);
+                    } finally {
+                        DoodleTrace.endSection();
+                    }
+                    callback2.onActionResult(count != 0, count);
+                }
+            });
+        }
+
         private class CanvasBuffer {
 
             private static final String TAG = "Render$CanvasBuffer";
-            private static final int FRAMES_SIZE_MAX = 4;
-            // 关键帧之间至多间隔的绘画步骤数量
-            private static final int FRAMES_STEP_INTERVAL_MAX = 8;
-            // 关键帧缓存图像
-            private final ArrayList<FrameDrawStep> mFrames = new ArrayList<>(FRAMES_SIZE_MAX);
+            // 关键帧数量的下限, 不受内存限制的影响
+            private static final int FRAMES_SIZE_MIN = 2;
+            // 关键帧缓存图像, 按照 draw step index 升序排列
+            private final ArrayList<FrameDrawStep> mFrames = new ArrayList<>();
             // 绘画步骤
             private final ArrayList<DrawStep> mDrawSteps = new ArrayList<>();
             // redo 绘画步骤
             private final ArrayList<DrawStep> mDrawStepsRedo = new ArrayList<>();
+            // 延迟解码的 redo 步骤, 在 mDrawStepsRedo 之后恢复
+            private LazyRedoSteps mLazyRedoSteps;
+            // 最近一次通知的监听和回退, 恢复状态
+            private DoodleBufferChangedListener mNotifiedListener;
+            private boolean mNotifiedCanUndo;
+            private boolean mNotifiedCanRedo;
 
             private final float mMaxScale;
             private final float mMinScale;
@@ -1202,11 +1960,52 @@ public class DoodleView extends FrameLayout {
 
             private long mLastDrawingTime;
 
+            // 绘画缓冲区需要完整的重新绘制, 否则只需要重新绘制 mDirtyBounds 区域
+            private boolean mBufferInvalid = true;
+            // texture 中的内容已经失效，需要完整的重新绘制
+            private boolean mTextureInvalid = true;
+            // 自上一次绘制以来最后一个绘画步骤发生变化的区域
+            private final RectF mDirtyBounds = new RectF();
+            private final RectF mDirtyBoundsTmp = new RectF();
+            private final Rect mDirtyRect = new Rect();
+            // 上一次绘制缓冲区时的状态, 用于校验是否可以只重新绘制变化的区域
+            private DrawStep mDrawnLastStep;
+            private int mDrawnStepSize;
+            private int mDrawnBackgroundColor;
+
+            // 播放关键帧占用内存的上限, 超出时减半播放关键帧的数量
+            private static final long SEEK_FRAMES_MEMORY_LIMIT = 24 * 1024 * 1024;
+            // 播放关键帧数量的下限, 不受内存限制的影响
+            private static final int SEEK_FRAMES_SIZE_MIN = 2;
+            // 播放关键帧之间间隔的最少绘画步骤数量
+            private static final int SEEK_FRAME_STEP_INTERVAL_MIN = 16;
+            // 绘画历史是否完全通过单步恢复构建(播放), 只有此时播放位置和播放关键帧才有效
+            private boolean mSeekable = true;
+            // 播放位置, 渲染区中所有绘画步骤已经恢复的子步骤总数. 只在渲染线程中修改, 可以在 ui 线程中读取
+            private volatile int mPosition;
+            // 播放时间轴, 按照播放顺序的子步骤数量前缀和: mTimeline[i] 是前 i 个有绘画内容的步骤的子步骤总数. 载入时构建
+            @Nullable
+            private volatile int[] mTimeline;
+            // 播放关键帧, 播放过程中按照间隔记录, 按照 draw step size 升序排列. 与关键帧不同, 回退时不会被删除
+            private final ArrayList<SeekFrame> mSeekFrames = new ArrayList<>();
+            private int mSeekFrameStepInterval = SEEK_FRAME_STEP_INTERVAL_MIN;
+
+            // 每个子步骤的平均绘制耗时(纳秒)的初始估计值
+            private static final long NANOS_PER_SUB_STEP_DEFAULT = 200 * 1000;
+            // 按照时间预算单步恢复时，每次恢复的子步骤数量上限
+            private static final int REDO_BY_FRAME_BUDGET_MAX = 4096;
+            // 最近绘制缓冲区时每个恢复的子步骤平均耗时(纳秒), 平滑处理
+            private long mNanosPerSubStep = NANOS_PER_SUB_STEP_DEFAULT;
+            // 上一次绘制缓冲区时的播放位置
+            private int mDrawnPosition;
+
             public CanvasBuffer(int textureWidth, int textureHeight, int canvasWidth, int canvasHeight) {
                 mTextureWidth = textureWidth;
                 mTextureHeight = textureHeight;
 
-                mBitmap = Bitmap.createBitmap(canvasWidth, canvasHeight, Bitmap.Config.ARGB_8888);
+                // 缓存池中其它尺寸的图像不会再被使用
+                mBitmapPool.trimToSize(canvasWidth, canvasHeight);
+                mBitmap = mBitmapPool.obtain(canvasWidth, canvasHeight);
                 mBitmapWidth = mBitmap.getWidth();
                 mBitmapHeight = mBitmap.getHeight();
                 mBitmapCanvas = new Canvas(mBitmap);
@@ -1259,6 +2058,7 @@ public class DoodleView extends FrameLayout {
              */
             public boolean hasDrawContent(boolean includeRedo) {
                 if (includeRedo) {
+                    pullLazyRedo();
                     for (DrawStep drawStep : mDrawStepsRedo) {
                         if (drawStep.hasDrawContent()) {
                             return true;
@@ -1280,16 +2080,36 @@ public class DoodleView extends FrameLayout {
              */
             private boolean clearRedo() {
                 boolean hasDrawContent = DrawStep.hasDrawContent(mDrawStepsRedo);
+                if (mLazyRedoSteps != null && mLazyRedoSteps.hasNext()) {
+                    // 延迟解码的步骤不再解码，直接丢弃
+                    hasDrawContent = true;
+                    mLazyRedoSteps.clear();
+                }
                 if (mDrawStepsRedo.size() > 0) {
                     mDrawStepsRedo.clear();
                 }
                 return hasDrawContent;
             }
 
+            /**
+             * 回退和恢复的状态与上一次通知的不同(或者监听已经变化)时才通知, 播放时每一次移动播放位置都会调用
+             */
             private void notifyUndoRedoChanged() {
-                if (mDoodleBufferChangedListener != null) {
-                    mDoodleBufferChangedListener.onDoodleBufferChanged(canUndo(), canRedo());
+                DoodleBufferChangedListener doodleBufferChangedListener = mDoodleBufferChangedListener;
+                if (doodleBufferChangedListener == null) {
+                    return;
                 }
+                boolean canUndo = canUndo();
+                boolean canRedo = canRedo();
+                if (doodleBufferChangedListener == mNotifiedListener
+                        && canUndo == mNotifiedCanUndo
+                        && canRedo == mNotifiedCanRedo) {
+                    return;
+                }
+                mNotifiedListener = doodleBufferChangedListener;
+                mNotifiedCanUndo = canUndo;
+                mNotifiedCanRedo = canRedo;
+                doodleBufferChangedListener.onDoodleBufferChanged(canUndo, canRedo);
             }
 
             /**
@@ -1303,6 +2123,7 @@ public class DoodleView extends FrameLayout {
              * 小心线程. 回退操作，回退成功，返回 true, 否则返回 false.
              */
             public boolean undo() {
+                invalidateBuffer();
                 int size = mDrawSteps.size();
                 if (size <= 0) {
                     return false;
@@ -1320,6 +2141,7 @@ public class DoodleView extends FrameLayout {
                     // 最后一个关键帧与最终图像之间至少相差一个绘画步骤
                     if (lastFrame.mDrawStepIndex >= indexRemove - 1) {
                         mFrames.remove(frameSize - 1);
+                        mBitmapPool.release(lastFrame.mBitmap);
                     }
                 }
 
@@ -1338,13 +2160,50 @@ public class DoodleView extends FrameLayout {
              * 小心线程. 是否可以前进, undo 之后的反向恢复
              */
             public boolean canRedo() {
+                pullLazyRedo();
                 return DrawStep.hasDrawContent(mDrawStepsRedo);
             }
 
+            /**
+             * 如果 redo 中没有可以恢复的绘画内容，从延迟解码的 redo 步骤中依次取出，直到找到有绘画内容的步骤
+             */
+            private void pullLazyRedo() {
+                if (mLazyRedoSteps == null) {
+                    return;
+                }
+                while (mLazyRedoSteps.hasNext() && !DrawStep.hasDrawContent(mDrawStepsRedo)) {
+                    DrawStep drawStep = mLazyRedoSteps.next();
+                    if (drawStep != null) {
+                        // 延迟解码的步骤在现有的 redo 步骤之后恢复
+                        mDrawStepsRedo.add(0, drawStep);
+                    }
+                }
+            }
+
+            /**
+             * 解码所有延迟解码的 redo 步骤, 例如在保存数据之前
+             */
+            private void drainLazyRedo() {
+                if (mLazyRedoSteps == null || !mLazyRedoSteps.hasNext()) {
+                    return;
+                }
+                ArrayList<DrawStep> drawSteps = new ArrayList<>();
+                while (mLazyRedoSteps.hasNext()) {
+                    DrawStep drawStep = mLazyRedoSteps.next();
+                    if (drawStep != null) {
+                        drawSteps.add(drawStep);
+                    }
+                }
+                Collections.reverse(drawSteps);
+                mDrawStepsRedo.addAll(0, drawSteps);
+            }
+
             /**
              * 小心线程. 反向恢复，恢复成功，返回 true, 否则返回 false.
              */
             public boolean redo() {
+                invalidateBuffer();
+                pullLazyRedo();
                 int size = mDrawStepsRedo.size();
                 if (size <= 0) {
                     return false;
@@ -1396,6 +2255,7 @@ public class DoodleView extends FrameLayout {
                     throw new IllegalArgumentException("count must >= 0");
                 }
 
+                invalidateBuffer();
                 int undoStepCount = 0;
                 while (count > 0) {
                     int size = mDrawSteps.size();
@@ -1444,6 +2304,7 @@ public class DoodleView extends FrameLayout {
                         // 最后一个关键帧与最终图像之间至少相差一个绘画步骤
                         if (lastFrame.mDrawStepIndex >= indexRemove - 1) {
                             mFrames.remove(frameSize - 1);
+                            mBitmapPool.release(lastFrame.mBitmap);
                         }
                     }
 
@@ -1458,6 +2319,7 @@ public class DoodleView extends FrameLayout {
                     throw new IllegalAccessError("undo by step logic error " + count);
                 }
 
+                mPosition -= undoStepCount;
                 return undoStepCount;
             }
 
@@ -1486,6 +2348,7 @@ public class DoodleView extends FrameLayout {
                     throw new IllegalArgumentException("count must >= 0");
                 }
 
+                invalidateBuffer();
                 int redoStepCount = 0;
                 while (count > 0) {
                     int size = mDrawSteps.size();
@@ -1527,9 +2390,295 @@ public class DoodleView extends FrameLayout {
                     throw new IllegalAccessError("redo by step logic error " + count);
                 }
 
+                mPosition += redoStepCount;
                 return redoStepCount;
             }
 
+            /**
+             * 小心线程. 按照绘制时间预算单步恢复, 根据最近每个子步骤的平均绘制耗时估算可以恢复的数量(至少一个), 返回实际恢复的步数.
+             * 绘制耗时由固定开销和子步骤开销组成，估算值会逐渐收敛到使得一次绘制恰好用完预算的数量.
+             */
+            public int redoByFrameBudget(long budgetNanos) {
+                long count = budgetNanos / Math.max(1L, mNanosPerSubStep);
+                return redoByStep((int) Math.max(1L, Math.min(REDO_BY_FRAME_BUDGET_MAX, count)));
+            }
+
+            /**
+             * 载入数据之后调用. 如果渲染区中有绘画步骤(不是单步恢复的)，不能按照播放位置移动;
+             * 否则按照播放顺序构建所有 redo 步骤的播放时间轴, 子步骤数量根据类型和坐标点数量计算, 延迟解码的步骤直接从文件索引中计算，不解码.
+             */
+            public void onLoaded() {
+                if (mDrawSteps.size() > 0) {
+                    invalidateSeekIndex();
+                    return;
+                }
+
+                final int redoSize = mDrawStepsRedo.size();
+                final int lazySize = mLazyRedoSteps != null ? mLazyRedoSteps.getRemainCount() : 0;
+                int[] timeline = new int[redoSize + lazySize + 1];
+                int size = 0;
+                // redo 中最后一个元素是下一个要恢复的步骤, 延迟解码的步骤在其之后
+                for (int i = redoSize - 1; i >= 0; i--) {
+                    DrawStep drawStep = mDrawStepsRedo.get(i);
+                    if (!drawStep.hasDrawContent()) {
+                        // 没有绘画内容的步骤恢复时会被丢弃
+                        continue;
+                    }
+                    // 不创建子步骤(自由绘制会为整个历史构建路径), 恢复时才会 resetSubStep
+                    timeline[size + 1] = timeline[size] + DoodleDataUtil.getSubStepCount(drawStep);
+                    size++;
+                }
+                for (int i = 0; i < lazySize; i++) {
+                    int subStepCount = mLazyRedoSteps.getSubStepCount(i);
+                    if (subStepCount <= 0) {
+                        continue;
+                    }
+                    timeline[size + 1] = timeline[size] + subStepCount;
+                    size++;
+                }
+                mTimeline = Arrays.copyOf(timeline, size + 1);
+                CommonLog.d(TAG + " timeline " + size + " draw steps, duration " + getDuration());
+            }
+
+            /**
+             * 播放的总长度(子步骤总数), 没有播放时间轴时返回 0
+             */
+            public int getDuration() {
+                int[] timeline = mTimeline;
+                return timeline != null ? timeline[timeline.length - 1] : 0;
+            }
+
+            /**
+             * 当前的播放位置, 不能按照播放位置移动时返回 0
+             */
+            public int getPosition() {
+                return mTimeline != null ? mPosition : 0;
+            }
+
+            /**
+             * 二分查找播放位置 position 所在的绘画步骤之前的绘画步骤数量, 这些绘画步骤在该位置都已经完整恢复.
+             */
+            private int findTimelineDrawStepSize(int[] timeline, int position) {
+                // 查找最后一个满足 timeline[i] < position 的 i
+                int low = 0;
+                int high = timeline.length - 1;
+                int found = 0;
+                while (low <= high) {
+                    int mid = (low + high) >>> 1;
+                    if (timeline[mid] < position) {
+                        found = mid;
+                        low = mid + 1;
+                    } else {
+                        high = mid - 1;
+                    }
+                }
+                return found;
+            }
+
+            /**
+             * 小心线程. 相对于当前位置移动指定的子步骤数量(带方向), 返回实际移动的数量(带方向).
+             * 如果绘画历史不是通过单步恢复构建的，逐个子步骤的单步恢复或者回退.
+             */
+            public int seekBy(int count) {
+                if (!mSeekable) {
+                    return count > 0 ? redoByStep(count) : -undoByStep(-count);
+                }
+
+                final int position = mPosition;
+                return seekTo((int) Math.max(0L, Math.min(Integer.MAX_VALUE, (long) position + count))) - position;
+            }
+
+            /**
+             * 小心线程. 移动到指定的播放位置，返回实际到达的位置. 如果绘画历史不是通过单步恢复构建的，不能移动，返回 -1.
+             * 先移动到目标之前最近的播放关键帧(没有时移动到起点), 再单步恢复余下的部分, 重新绘制的绘画步骤数量不超过播放关键帧的间隔.
+             */
+            public int seekTo(int position) {
+                if (!mSeekable) {
+                    return -1;
+                }
+                if (position < 0) {
+                    position = 0;
+                }
+                final int[] timeline = mTimeline;
+                if (timeline != null) {
+                    position = Math.min(position, timeline[timeline.length - 1]);
+                }
+
+                final int current = mPosition;
+                if (position == current) {
+                    return current;
+                }
+
+                final int size = mDrawSteps.size();
+                final int lastDrawStepStart = size > 0 ? current - mDrawSteps.get(size - 1).getSubStepMoved() : 0;
+                if (position < current && position >= lastDrawStepStart) {
+                    // 目标在最后一个绘画步骤之内，直接单步回退
+                    undoByStep(current - position);
+                    return mPosition;
+                }
+
+                SeekFrame seekFrame = findSeekFrame(position);
+                if (position > current && (seekFrame == null || seekFrame.mDrawStepSize <= size)) {
+                    // 没有比当前位置更靠近目标的播放关键帧, 从时间轴中找到目标所在的绘画步骤,
+                    // 之前的绘画步骤直接完整恢复，不必逐个子步骤移动, 再单步恢复余下的部分
+                    if (timeline != null) {
+                        final int drawStepSize = findTimelineDrawStepSize(timeline, position);
+                        if (drawStepSize > size) {
+                            invalidateBuffer();
+                            moveToDrawStepSize(drawStepSize);
+                        }
+                    }
+                    redoByStep(position - mPosition);
+                    notifyUndoRedoChanged();
+                    return mPosition;
+                }
+
+                CommonLog.d(TAG + " seek " + current + " -> " + position
+                        + " from seek frame " + (seekFrame != null ? seekFrame.mDrawStepSize : 0));
+                invalidateBuffer();
+                final int drawStepSize = seekFrame != null ? seekFrame.mDrawStepSize : 0;
+                moveToDrawStepSize(drawStepSize);
+                final boolean seekFrameReached = seekFrame != null
+                        && mDrawSteps.size() == drawStepSize
+                        && mPosition == seekFrame.mPosition;
+
+                redoByStep(position - mPosition);
+
+                if (seekFrameReached && mDrawSteps.size() > drawStepSize) {
+                    // 关键帧与最终图像之间至少相差一个绘画步骤
+                    installSeekFrame(seekFrame);
+                }
+                notifyUndoRedoChanged();
+                return mPosition;
+            }
+
+            /**
+             * 将渲染区调整为恰好包含指定数量的完整恢复的绘画步骤, 只移动绘画步骤，不绘制.
+             */
+            private void moveToDrawStepSize(int drawStepSize) {
+                while (mDrawSteps.size() > drawStepSize) {
+                    DrawStep drawStep = mDrawSteps.remove(mDrawSteps.size() - 1);
+                    mPosition -= drawStep.getSubStepMoved();
+                    mDrawStepsRedo.add(drawStep);
+                }
+
+                // 删除绘画步骤之外的关键帧, 最后一个关键帧与最终图像之间至少相差一个绘画步骤
+                for (int i = mFrames.size() - 1; i >= 0; i--) {
+                    FrameDrawStep frame = mFrames.get(i);
+                    if (frame.mDrawStepIndex < drawStepSize - 1) {
+                        break;
+                    }
+                    mFrames.remove(i);
+                    mBitmapPool.release(frame.mBitmap);
+                }
+
+                int size = mDrawSteps.size();
+                if (size > 0) {
+                    // 最后一个绘画步骤可能只恢复了一部分
+                    DrawStep lastDrawStep = mDrawSteps.get(size - 1);
+                    mPosition += lastDrawStep.moveSubStepBy(lastDrawStep.getSubStepCount());
+                }
+
+                while (mDrawSteps.size() < drawStepSize) {
+                    pullLazyRedo();
+                    int redoSize = mDrawStepsRedo.size();
+                    if (redoSize <= 0) {
+                        break;
+                    }
+                    DrawStep drawStep = mDrawStepsRedo.remove(redoSize - 1);
+                    if (!drawStep.hasDrawContent()) {
+                        // 与 #redo() 一致，丢弃没有绘画内容的步骤
+                        continue;
+                    }
+                    drawStep.resetSubStep();
+                    mPosition += drawStep.moveSubStepBy(drawStep.getSubStepCount());
+                    mDrawSteps.add(drawStep);
+                }
+            }
+
+            /**
+             * 将播放关键帧复制为关键帧, 之后只需要绘制该播放关键帧之后的绘画步骤
+             */
+            private void installSeekFrame(SeekFrame seekFrame) {
+                final int drawStepIndex = seekFrame.mDrawStepSize - 1;
+                final int framesSize = mFrames.size();
+                if (framesSize > 0 && mFrames.get(framesSize - 1).mDrawStepIndex >= drawStepIndex) {
+                    // 已经存在对应的关键帧
+                    return;
+                }
+
+                Bitmap bitmap = mBitmapPool.obtain(mBitmapWidth, mBitmapHeight);
+                clear(new Canvas(bitmap)).drawBitmap(seekFrame.mBitmap, 0f, 0f, null);
+                appendFrame(new FrameDrawStep(drawStepIndex, bitmap));
+            }
+
+            /**
+             * 二分查找播放位置不超过 position 的最后一个播放关键帧, 没有时返回 null
+             */
+            @Nullable
+            private SeekFrame findSeekFrame(int position) {
+                int low = 0;
+                int high = mSeekFrames.size() - 1;
+                SeekFrame found = null;
+                while (low <= high) {
+                    int mid = (low + high) >>> 1;
+                    SeekFrame seekFrame = mSeekFrames.get(mid);
+                    if (seekFrame.mPosition <= position) {
+                        found = seekFrame;
+                        low = mid + 1;
+                    } else {
+                        high = mid - 1;
+                    }
+                }
+                return found;
+            }
+
+            /**
+             * 当前画布图像是前 drawStepSize 个完整恢复的绘画步骤之后的图像, 距离上一个播放关键帧足够远时记录为新的播放关键帧.
+             *
+             * @param position 该图像对应的播放位置
+             */
+            private void recordSeekFrame(int drawStepSize, int position) {
+                if (!mSeekable) {
+                    return;
+                }
+
+                final int seekFramesSize = mSeekFrames.size();
+                final int lastDrawStepSize = seekFramesSize > 0 ? mSeekFrames.get(seekFramesSize - 1).mDrawStepSize : 0;
+                if (drawStepSize - lastDrawStepSize < mSeekFrameStepInterval) {
+                    return;
+                }
+
+                mSeekFrames.add(new SeekFrame(drawStepSize, position, createFrameBitmap(null)));
+
+                // 超出内存限制时，淘汰一半的播放关键帧并且间隔加倍, 播放关键帧仍然均匀分布
+                long frameBytes = 4L * mBitmapWidth * mBitmapHeight;
+                long seekFramesSizeMax = Math.max(SEEK_FRAMES_SIZE_MIN, SEEK_FRAMES_MEMORY_LIMIT / Math.max(1, frameBytes));
+                while (mSeekFrames.size() > seekFramesSizeMax) {
+                    for (int i = mSeekFrames.size() - 2; i >= 0; i -= 2) {
+                        mBitmapPool.release(mSeekFrames.remove(i).mBitmap);
+                    }
+                    mSeekFrameStepInterval *= 2;
+                    CommonLog.d(TAG + " trim seek frames, size " + mSeekFrames.size() + ", step interval " + mSeekFrameStepInterval);
+                }
+            }
+
+            /**
+             * 绘画历史被编辑之后，播放位置和播放关键帧不再有效
+             */
+            public void invalidateSeekIndex() {
+                mSeekable = false;
+                mTimeline = null;
+                releaseSeekFrames();
+            }
+
+            private void releaseSeekFrames() {
+                for (SeekFrame seekFrame : mSeekFrames) {
+                    mBitmapPool.release(seekFrame.mBitmap);
+                }
+                mSeekFrames.clear();
+            }
+
             public void setMatrix(final Matrix matrix) {
                 Threads.runOnUi(new Runnable() {
                     @Override
@@ -1620,6 +2769,14 @@ public class DoodleView extends FrameLayout {
                 return mLastDrawingTime;
             }
 
+            /**
+             * 画布, 关键帧, 播放关键帧和缓存池中的 Bitmap 占用的字节数
+             */
+            public long getBitmapBytes() {
+                long frameBytes = 4L * mBitmapWidth * mBitmapHeight;
+                return frameBytes * (1 + mFrames.size() + mSeekFrames.size()) + mBitmapPool.getBytes();
+            }
+
             public Matrix getMatrix() {
                 mMatrixTmp.reset();
                 mTextureView.getTransform(mMatrixTmp);
@@ -1632,17 +2789,166 @@ public class DoodleView extends FrameLayout {
                 return mMatrixInvertTmp;
             }
 
-            public void draw(Canvas canvas) {
-                CommonLog.d(TAG + " draw");
-                // 清空背景
-                clear(mBitmapCanvas).drawColor(getCanvasBackgroundColor());
+            /**
+             * 画布不再使用时，将画布图像和所有关键帧图像放回缓存池. 之后不能再使用该画布
+             */
+            public void release() {
+                for (FrameDrawStep frame : mFrames) {
+                    mBitmapPool.release(frame.mBitmap);
+                }
+                mFrames.clear();
+                releaseSeekFrames();
+                mBitmapPool.release(mBitmap);
+            }
+
+            /**
+             * 标记绘画缓冲区需要完整的重新绘制
+             */
+            public void invalidateBuffer() {
+                mBufferInvalid = true;
+            }
+
+            /**
+             * 标记 texture 中的内容已经失效，下一次绘制时需要完整的绘制到 texture 上
+             */
+            public void invalidateTexture() {
+                mTextureInvalid = true;
+            }
 
-                if (!restoreBuffer()) {
-                    refreshBuffer();
+            /**
+             * 将绘画缓冲区完整的绘制到指定 canvas 上
+             */
+            public void draw(Canvas canvas) {
+                // 不是绘制到 texture 上, 保留 texture 的失效状态
+                boolean textureInvalid = mTextureInvalid;
+                Rect dirty = updateBuffer();
+                if (textureInvalid || dirty == null || !dirty.isEmpty()) {
+                    mTextureInvalid = true;
                 }
+                drawBuffer(canvas);
+            }
+
+            /**
+             * 将绘画缓冲区中的图像绘制到指定 canvas 上, canvas 的裁剪区域之外不会变化
+             */
+            public void drawBuffer(Canvas canvas) {
                 canvas.drawBitmap(mBitmap, 0f, 0f, null);
             }
 
+            /**
+             * 更新绘画缓冲区. 返回 texture 上需要重新绘制的区域, 返回 null 表示需要完整的重新绘制, 返回空的区域表示没有变化.
+             * 返回的 Rect 会被复用.
+             */
+            @Nullable
+            public Rect updateBuffer() {
+                final long timeStart = System.nanoTime();
+                final int drawStepSize = mDrawSteps.size();
+                final int backgroundColor = getCanvasBackgroundColor();
+                final DrawStep lastDrawStep = drawStepSize > 0 ? mDrawSteps.get(drawStepSize - 1) : null;
+
+                // 只有最后一个绘画步骤继续绘制(如连续的滑动)时，才可以只重新绘制变化的区域
+                boolean incremental = !mBufferInvalid
+                        && lastDrawStep != null
+                        && lastDrawStep == mDrawnLastStep
+                        && drawStepSize == mDrawnStepSize
+                        && backgroundColor == mDrawnBackgroundColor
+                        && isLastFrameBeforeLastDrawStep(drawStepSize);
+
+                Rect dirty = null;
+                int keyFrame;
+                int replayedSteps;
+                if (incremental) {
+                    keyFrame = DoodleMetrics.Frame.KEY_FRAME_NONE;
+                    replayedSteps = 0;
+                    mDirtyBounds.roundOut(mDirtyRect);
+                    if (mDirtyBounds.isEmpty() || !mDirtyRect.intersect(0, 0, mBitmapWidth, mBitmapHeight)) {
+                        mDirtyRect.setEmpty();
+                    } else {
+                        // 在变化的区域内，使用最后一个关键帧(或者背景)和最后一个绘画步骤重新绘制
+                        mBitmapCanvas.save();
+                        mBitmapCanvas.clipRect(mDirtyRect);
+                        clear(mBitmapCanvas);
+                        if (drawStepSize > 1) {
+                            mFrames.get(mFrames.size() - 1).onDraw(mBitmapCanvas);
+                            keyFrame = DoodleMetrics.Frame.KEY_FRAME_HIT;
+                        } else {
+                            mBitmapCanvas.drawColor(backgroundColor);
+                        }
+                        lastDrawStep.onDraw(mBitmapCanvas);
+                        mBitmapCanvas.restore();
+                        replayedSteps = 1;
+                    }
+                    dirty = mDirtyRect;
+                } else {
+                    CommonLog.d(TAG + " draw");
+                    // 清空背景
+                    clear(mBitmapCanvas).drawColor(backgroundColor);
+
+                    boolean restored;
+                    DoodleTrace.beginSection("DoodleView.restoreBuffer");
+                    try {
+                        restored = restoreBuffer();
+                    } finally {
+                        DoodleTrace.endSection();
+                    }
+                    if (restored) {
+                        keyFrame = DoodleMetrics.Frame.KEY_FRAME_MISS;
+                        replayedSteps = drawStepSize;
+                    } else {
+                        if (!mFrames.isEmpty()) {
+                            keyFrame = DoodleMetrics.Frame.KEY_FRAME_HIT;
+                        } else if (drawStepSize > 1) {
+                            keyFrame = DoodleMetrics.Frame.KEY_FRAME_MISS;
+                        } else {
+                            keyFrame = DoodleMetrics.Frame.KEY_FRAME_NONE;
+                        }
+                        DoodleTrace.beginSection("DoodleView.refreshBuffer");
+                        try {
+                            replayedSteps = refreshBuffer();
+                        } finally {
+                            DoodleTrace.endSection();
+                        }
+                    }
+                    if (lastDrawStep != null) {
+                        // 已经完整绘制，丢弃之前累积的变化区域
+                        lastDrawStep.takeDirtyBounds(mDirtyBoundsTmp);
+                    }
+                }
+
+                mRenderMetrics.onBufferUpdated(!incremental, keyFrame, replayedSteps);
+
+                mBufferInvalid = false;
+                mDirtyBounds.setEmpty();
+                mDrawnLastStep = lastDrawStep;
+                mDrawnStepSize = drawStepSize;
+                mDrawnBackgroundColor = backgroundColor;
+
+                // 统计自上一次绘制以来恢复的每个子步骤的平均绘制耗时
+                final int subStepRedo = mPosition - mDrawnPosition;
+                if (subStepRedo > 0) {
+                    long nanosPerSubStep = (System.nanoTime() - timeStart) / subStepRedo;
+                    mNanosPerSubStep = (mNanosPerSubStep * 3 + nanosPerSubStep) / 4;
+                }
+                mDrawnPosition = mPosition;
+
+                if (mTextureInvalid) {
+                    mTextureInvalid = false;
+                    return null;
+                }
+                return dirty;
+            }
+
+            /**
+             * 最后一个关键帧是否恰好是倒数第二个绘画步骤之后的图像(只有一个绘画步骤时，没有关键帧)
+             */
+            private boolean isLastFrameBeforeLastDrawStep(int drawStepSize) {
+                final int framesSize = mFrames.size();
+                if (drawStepSize == 1) {
+                    return framesSize == 0;
+                }
+                return framesSize > 0 && mFrames.get(framesSize - 1).mDrawStepIndex == drawStepSize - 2;
+            }
+
             /**
              * 恢复绘制缓冲区, 如果是恢复逻辑返回 true, 否则返回 false.
              */
@@ -1657,7 +2963,8 @@ public class DoodleView extends FrameLayout {
                     return false;
                 }
 
-                if (drawStepSize < FRAMES_STEP_INTERVAL_MAX || drawStepSize < 2) {
+                final int stepInterval = mKeyFrameStepInterval;
+                if (drawStepSize < stepInterval || drawStepSize < 2) {
                     // 如果当前没有历史关键帧，并且绘画步骤数量不足构建一个关键帧的长度，则认为不是恢复逻辑
                     return false;
                 }
@@ -1665,56 +2972,22 @@ public class DoodleView extends FrameLayout {
                 CommonLog.d(TAG + " restore frame");
 
                 // 绘画所有步骤，并且恢复所有关键帧
-
-                // 参与关键帧绘画的步骤数量, 最后的这些步骤需要处理关键帧的绘制和保存
-                final int stepSizeInFrames = Math.min(drawStepSize, FRAMES_SIZE_MAX * FRAMES_STEP_INTERVAL_MAX);
-
-                // 关键帧中第一帧的 index (总是不小于0)
-                final int firstStepIndexInFrames = drawStepSize - stepSizeInFrames;
-                // 绘制第一个关键帧之前的所有步骤
-                for (int i = 0; i < firstStepIndexInFrames; i++) {
-                    mDrawSteps.get(i).onDraw(mBitmapCanvas);
-                }
-                // 绘制除最后一个绘画步骤外余下的步骤，并且按照间隔存储关键帧
-                for (int i = firstStepIndexInFrames; i < drawStepSize - 1; i++) {
-                    mDrawSteps.get(i).onDraw(mBitmapCanvas);
-                    // 将当前的图像存储为一个关键帧
-                    Bitmap bitmap = Bitmap.createBitmap(mBitmapWidth, mBitmapHeight, Bitmap.Config.ARGB_8888);
-                    clear(new Canvas(bitmap)).drawBitmap(mBitmap, 0f, 0f, null);
-                    FrameDrawStep frame = new FrameDrawStep(i, bitmap);
-                    appendFrame(frame);
-
-                    // 绘画该帧之后的 FRAMES_STEP_INTERVAL_MAX - 1 个绘画步骤
-                    for (int j = 0; j < FRAMES_STEP_INTERVAL_MAX; j++) {
-                        i++;
-                        // 注意不要绘画最后一个绘画步骤
-                        if (i < drawStepSize - 1) {
-                            mDrawSteps.get(i).onDraw(mBitmapCanvas);
-                        } else {
-                            break;
-                        }
+                // 关键帧均匀分布在整个绘画历史中(最后一个关键帧是倒数第二个绘画步骤), 使得 undo 到任意位置时需要重新绘制的步骤数量都有上限
+                final int framesSizeMax = getFramesSizeMax();
+                final int interval = Math.max(stepInterval, (drawStepSize - 2) / (framesSizeMax - 1) + 1);
+                int position = 0;
+                for (int i = 0; i < drawStepSize - 1; i++) {
+                    DrawStep drawStep = mDrawSteps.get(i);
+                    drawStep.onDraw(mBitmapCanvas);
+                    if (mSeekable) {
+                        position += drawStep.getSubStepMoved();
+                        recordSeekFrame(i + 1, position);
                     }
-                }
-
-                // 如果目前恢复的最后一个关键帧所在的位置不是倒数第二个绘画步骤，需要将目前的图像存储为一个新的关键帧
-                boolean saveFrame;
-                int currentFrameSize = mFrames.size();
-                if (currentFrameSize <= 0) {
-                    saveFrame = true;
-                } else {
-                    FrameDrawStep lastFrame = mFrames.get(currentFrameSize - 1);
-                    saveFrame = lastFrame.mDrawStepIndex < drawStepSize - 2;
-                    if (lastFrame.mDrawStepIndex > drawStepSize - 2) {
-                        throw new RuntimeException("logic error. last frame draw step index[" + lastFrame.mDrawStepIndex + "], drawStepSize[" + drawStepSize + "]");
+                    if ((i + 1) % interval == 0 || i == drawStepSize - 2) {
+                        // 将当前的图像存储为一个关键帧
+                        appendFrame(new FrameDrawStep(i, createFrameBitmap(null)));
                     }
                 }
-                if (saveFrame) {
-                    // 将当前的图像存储为一个关键帧
-                    Bitmap bitmap = Bitmap.createBitmap(mBitmapWidth, mBitmapHeight, Bitmap.Config.ARGB_8888);
-                    clear(new Canvas(bitmap)).drawBitmap(mBitmap, 0f, 0f, null);
-                    FrameDrawStep frame = new FrameDrawStep(drawStepSize - 2, bitmap);
-                    appendFrame(frame);
-                }
 
                 // 绘画最后一个绘画步骤
                 mDrawSteps.get(drawStepSize - 1).onDraw(mBitmapCanvas);
@@ -1722,7 +2995,28 @@ public class DoodleView extends FrameLayout {
             }
 
             /**
-             * 将该关键帧存储到关键帧数组末尾
+             * 当前内存限制下最多可以保存的关键帧数量
+             */
+            private int getFramesSizeMax() {
+                long frameBytes = 4L * mBitmapWidth * mBitmapHeight;
+                long framesSizeMax = mKeyFrameMemoryLimit / Math.max(1, frameBytes);
+                return (int) Math.max(FRAMES_SIZE_MIN, Math.min(Integer.MAX_VALUE, framesSizeMax));
+            }
+
+            /**
+             * 将当前画布图像复制为关键帧图像, 如果指定了 reuseBitmap 则复用它的内存
+             */
+            private Bitmap createFrameBitmap(@Nullable Bitmap reuseBitmap) {
+                Bitmap bitmap = reuseBitmap;
+                if (bitmap == null) {
+                    bitmap = mBitmapPool.obtain(mBitmapWidth, mBitmapHeight);
+                }
+                clear(new Canvas(bitmap)).drawBitmap(mBitmap, 0f, 0f, null);
+                return bitmap;
+            }
+
+            /**
+             * 将该关键帧存储到关键帧数组末尾, 超出内存限制时淘汰多余的关键帧
              */
             private void appendFrame(FrameDrawStep frame) {
                 int currentFrameSize = mFrames.size();
@@ -1737,19 +3031,38 @@ public class DoodleView extends FrameLayout {
                     }
                 }
 
-                if (currentFrameSize >= FRAMES_SIZE_MAX) {
-                    // 关键帧过多，删除第一个，依次向前移动，新的关键帧放到最后一个位置
-                    for (int index = 0; index < currentFrameSize - 1; index++) {
-                        mFrames.set(index, mFrames.get(index + 1));
+                mFrames.add(frame);
+                trimFrames();
+            }
+
+            /**
+             * 淘汰关键帧直到满足内存限制. 每次淘汰一个关键帧，使得合并之后的间隔最小(间隔相同时淘汰较早的关键帧),
+             * 这样关键帧会逐渐均匀的分布在整个绘画历史中，undo 到任意位置时重新绘制的步骤数量大约不超过绘画步骤数量的 2 / (关键帧数量 - 1).
+             * 最后一个关键帧用于绘制最后一个绘画步骤，不会被淘汰.
+             */
+            public void trimFrames() {
+                final int framesSizeMax = getFramesSizeMax();
+                while (mFrames.size() > framesSizeMax) {
+                    int evictIndex = 0;
+                    int evictGap = Integer.MAX_VALUE;
+                    for (int i = 0; i < mFrames.size() - 1; i++) {
+                        int preDrawStepIndex = i > 0 ? mFrames.get(i - 1).mDrawStepIndex : -1;
+                        int gap = mFrames.get(i + 1).mDrawStepIndex - preDrawStepIndex;
+                        if (gap < evictGap) {
+                            evictGap = gap;
+                            evictIndex = i;
+                        }
                     }
-                    mFrames.set(currentFrameSize - 1, frame);
-                } else {
-                    mFrames.add(frame);
+                    FrameDrawStep evictFrame = mFrames.remove(evictIndex);
+                    CommonLog.d(TAG + " evict frame " + evictFrame.mDrawStepIndex + ", merged gap " + evictGap);
+                    mBitmapPool.release(evictFrame.mBitmap);
                 }
             }
 
-            // 重新绘制缓冲区
-            private void refreshBuffer() {
+            /**
+             * 从最后一个关键帧开始重新绘制缓冲区, 返回重新绘制的绘画步骤数量
+             */
+            private int refreshBuffer() {
                 // 取目前关键帧中的最后两个关键帧
                 FrameDrawStep f1 = null; // 最后一个关键帧
                 FrameDrawStep f2 = null; // 倒数第二个关键帧
@@ -1778,9 +3091,21 @@ public class DoodleView extends FrameLayout {
                 if (f1 != null) {
                     drawStepIndexStart = f1.mDrawStepIndex;
                 }
+                // 播放时, 从当前位置倒推最后一个关键帧对应的播放位置, 用于在绘制过程中记录播放关键帧
+                int position = mPosition;
+                if (mSeekable) {
+                    for (int i = drawStepIndexStart + 1; i < drawStepSize; i++) {
+                        position -= mDrawSteps.get(i).getSubStepMoved();
+                    }
+                }
                 for (int i = drawStepIndexStart + 1; i < drawStepSize - 1; i++) {
                     foundDrawStepsAfterLastFrame = true;
-                    mDrawSteps.get(i).onDraw(mBitmapCanvas);
+                    DrawStep drawStep = mDrawSteps.get(i);
+                    drawStep.onDraw(mBitmapCanvas);
+                    if (mSeekable) {
+                        position += drawStep.getSubStepMoved();
+                        recordSeekFrame(i + 1, position);
+                    }
                 }
 
                 if (foundDrawStepsAfterLastFrame) {
@@ -1789,20 +3114,15 @@ public class DoodleView extends FrameLayout {
                     // 如果最后一个关键帧可以覆盖，则复用最后一个关键帧的内存
                     boolean reuseLastFrame = false;
                     if (f1 != null) {
-                        if (f2 == null && f1.mDrawStepIndex < FRAMES_STEP_INTERVAL_MAX) {
+                        final int stepInterval = mKeyFrameStepInterval;
+                        if (f2 == null && f1.mDrawStepIndex < stepInterval) {
                             reuseLastFrame = true;
-                        } else if (f2 != null && f1.mDrawStepIndex - f2.mDrawStepIndex < FRAMES_STEP_INTERVAL_MAX) {
+                        } else if (f2 != null && f1.mDrawStepIndex - f2.mDrawStepIndex < stepInterval) {
                             reuseLastFrame = true;
                         }
                     }
 
-                    Bitmap lastFrameBitmap;
-                    if (reuseLastFrame) {
-                        lastFrameBitmap = f1.mBitmap;
-                    } else {
-                        lastFrameBitmap = Bitmap.createBitmap(mBitmapWidth, mBitmapHeight, Bitmap.Config.ARGB_8888);
-                    }
-                    clear(new Canvas(lastFrameBitmap)).drawBitmap(mBitmap, 0f, 0f, null);
+                    Bitmap lastFrameBitmap = createFrameBitmap(reuseLastFrame ? f1.mBitmap : null);
                     FrameDrawStep latestFrame = new FrameDrawStep(drawStepSize - 2, lastFrameBitmap);
 
                     if (reuseLastFrame) {
@@ -1816,6 +3136,7 @@ public class DoodleView extends FrameLayout {
                 if (drawStepSize > 0) {
                     mDrawSteps.get(drawStepSize - 1).onDraw(mBitmapCanvas);
                 }
+                return drawStepSize - 1 - drawStepIndexStart;
             }
 
             /**
@@ -1825,6 +3146,11 @@ public class DoodleView extends FrameLayout {
                 // 标记 undo or redo 是否产生了变化
                 boolean changed = false;
 
+                if (mSeekable) {
+                    // 绘画历史被编辑，不再是播放状态
+                    invalidateSeekIndex();
+                }
+
                 // 开始新的动作，清空可能存在的 redo 内容, cancel 动作不清空 redo
                 if (!(gestureAction instanceof CancelGestureAction)) {
                     // 此处直接赋值就可以不必位或运算
@@ -1833,6 +3159,7 @@ public class DoodleView extends FrameLayout {
 
                 int drawStepSize = mDrawSteps.size();
                 if (drawStepSize <= 0) {
+                    invalidateBuffer();
                     // 第一个绘画步骤
                     DrawStep drawStep = mBrush.createDrawStep(gestureAction);
                     mDrawSteps.add(drawStep);
@@ -1845,12 +3172,21 @@ public class DoodleView extends FrameLayout {
 
                 DrawStep lastDrawStep = mDrawSteps.get(drawStepSize - 1);
                 if (lastDrawStep.dispatchGestureAction(gestureAction, getBrush())) {
-                    // 当前绘画手势被最后一个绘画步骤继续处理
+                    // 当前绘画手势被最后一个绘画步骤继续处理, 只需要重新绘制变化的区域
+                    if (lastDrawStep.takeDirtyBounds(mDirtyBoundsTmp)) {
+                        if (!mDirtyBoundsTmp.isEmpty()) {
+                            mDirtyBounds.union(mDirtyBoundsTmp);
+                        }
+                    } else {
+                        invalidateBuffer();
+                    }
                     // undo 不产生变化
                     changed |= false;
                     return changed;
                 }
 
+                invalidateBuffer();
+
                 // 开始一个新的绘画步骤
                 DrawStep drawStep = mBrush.createDrawStep(gestureAction);
 
@@ -1891,6 +3227,8 @@ public class DoodleView extends FrameLayout {
                 mTextureActionGestureDetectorCompat.onTouchEvent(event);
             }
 
+            // 该事件的所有采样都已经写入
+            mTouchEventCount++;
             return true;
         }
 
@@ -1924,23 +3262,102 @@ public class DoodleView extends FrameLayout {
      * 单指点击
      */
     public static final class SinglePointGestureAction implements GestureAction {
-        public final MotionEvent event;
+        // 点击的位置(画布坐标系)
+        private float mX;
+        private float mY;
 
+        public SinglePointGestureAction(float x, float y) {
+            mX = x;
+            mY = y;
+        }
+
+        /**
+         * event 需要已经变换到画布坐标系中
+         *
+         * @deprecated 手势不再持有 MotionEvent, 使用 {@link #SinglePointGestureAction(float, float)}
+         */
+        @Deprecated
         public SinglePointGestureAction(MotionEvent event) {
-            this.event = event;
+            this(event.getX(), event.getY());
+        }
+
+        void set(float x, float y) {
+            mX = x;
+            mY = y;
+        }
+
+        public float getX() {
+            return mX;
+        }
+
+        public float getY() {
+            return mY;
         }
     }
 
     /**
-     * 单指移动
+     * 单指移动, 坐标都在画布坐标系中.
+     * 渲染线程会复用该对象，只在处理手势期间有效, 不能保留该对象或者其中的坐标数组.
      */
     public static final class ScrollGestureAction implements GestureAction {
-        public final MotionEvent downEvent;
-        public final MotionEvent currentEvent;
+        // 手势按下的位置
+        private float mDownX;
+        private float mDownY;
+        // 自上一次单指移动以来新增的轨迹点 (x0, y0, x1, y1, ...), 最后一个坐标点是当前的位置
+        private float[] mPoints;
+        private int mPointCount;
+
+        public ScrollGestureAction(float downX, float downY, float[] points, int pointCount) {
+            set(downX, downY, points, pointCount);
+        }
 
+        /**
+         * currentEvent 中的历史采样和当前位置依次作为轨迹点, 两个事件都需要已经变换到画布坐标系中
+         *
+         * @deprecated 手势不再持有 MotionEvent, 并且每次都会创建坐标数组,
+         * 使用 {@link #ScrollGestureAction(float, float, float[], int)}
+         */
+        @Deprecated
         public ScrollGestureAction(MotionEvent downEvent, MotionEvent currentEvent) {
-            this.downEvent = downEvent;
-            this.currentEvent = currentEvent;
+            final int historySize = currentEvent.getHistorySize();
+            float[] points = new float[(historySize + 1) * 2];
+            for (int i = 0; i < historySize; i++) {
+                points[i * 2] = currentEvent.getHistoricalX(i);
+                points[i * 2 + 1] = currentEvent.getHistoricalY(i);
+            }
+            points[historySize * 2] = currentEvent.getX();
+            points[historySize * 2 + 1] = currentEvent.getY();
+            set(downEvent.getX(), downEvent.getY(), points, historySize + 1);
+        }
+
+        void set(float downX, float downY, float[] points, int pointCount) {
+            mDownX = downX;
+            mDownY = downY;
+            mPoints = points;
+            mPointCount = pointCount;
+        }
+
+        public float getDownX() {
+            return mDownX;
+        }
+
+        public float getDownY() {
+            return mDownY;
+        }
+
+        /**
+         * 轨迹点的数量, 至少有一个
+         */
+        public int getPointCount() {
+            return mPointCount;
+        }
+
+        public float getX(int index) {
+            return mPoints[index * 2];
+        }
+
+        public float getY(int index) {
+            return mPoints[index * 2 + 1];
         }
     }
 
@@ -1983,6 +3400,21 @@ public class DoodleView extends FrameLayout {
         }
     }
 
+    /**
+     * 播放关键帧, 前 mDrawStepSize 个绘画步骤完整恢复之后的图像
+     */
+    private static final class SeekFrame {
+        private final int mDrawStepSize;
+        private final int mPosition; // 该图像对应的播放位置(已经恢复的子步骤总数)
+        private final Bitmap mBitmap;
+
+        private SeekFrame(int drawStepSize, int position, Bitmap bitmap) {
+            mDrawStepSize = drawStepSize;
+            mPosition = position;
+            mBitmap = bitmap;
+        }
+    }
+
     /**
      * 清空画布，使之完全透明
      */
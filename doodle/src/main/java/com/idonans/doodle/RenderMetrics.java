@@ -0,0 +1,108 @@
+package com.idonans.doodle;
+
+import android.support.annotation.Nullable;
+
+/**
+ * 收集 DoodleView 渲染线程的统计数据. 只在渲染线程中记录, 快照可以在任意线程中获取.
+ * Created by pengji on 16-7-30.
+ */
+class RenderMetrics {
+
+    // 当前帧的数据, 更新绘画缓冲区时写入, Draw 结束时提交. 只在渲染线程中使用
+    private boolean mFullRedraw;
+    private int mKeyFrame;
+    private int mReplayedSteps;
+    private final DoodleMetrics.Frame mFrame = new DoodleMetrics.Frame();
+
+    private final DoodleMetrics.Histogram mDrawDurationNanos = new DoodleMetrics.Histogram();
+    private final DoodleMetrics.Histogram mReplayedStepsPerFrame = new DoodleMetrics.Histogram();
+    private long mFrameCount;
+    private long mFullRedrawCount;
+    private long mKeyFrameHitCount;
+    private long mKeyFrameMissCount;
+    private long mReplayedStepCount;
+    private int mQueueDepth;
+    private int mQueueDepthMax;
+    private long mBitmapBytes;
+
+    @Nullable
+    private volatile DoodleView.RenderMetricsListener mListener;
+
+    void setListener(@Nullable DoodleView.RenderMetricsListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 绘画缓冲区更新完成
+     *
+     * @param keyFrame 见 DoodleMetrics.Frame#keyFrame
+     */
+    void onBufferUpdated(boolean fullRedraw, int keyFrame, int replayedSteps) {
+        mFullRedraw = fullRedraw;
+        mKeyFrame = keyFrame;
+        mReplayedSteps = replayedSteps;
+    }
+
+    /**
+     * 一次 Draw 完成, 提交当前帧的数据
+     */
+    void onDraw(long durationNanos, int queueDepth, long bitmapBytes) {
+        synchronized (this) {
+            mDrawDurationNanos.record(durationNanos);
+            mReplayedStepsPerFrame.record(mReplayedSteps);
+            mFrameCount++;
+            if (mFullRedraw) {
+                mFullRedrawCount++;
+            }
+            if (mKeyFrame == DoodleMetrics.Frame.KEY_FRAME_HIT) {
+                mKeyFrameHitCount++;
+            } else if (mKeyFrame == DoodleMetrics.Frame.KEY_FRAME_MISS) {
+                mKeyFrameMissCount++;
+            }
+            mReplayedStepCount += mReplayedSteps;
+            mQueueDepth = queueDepth;
+            mQueueDepthMax = Math.max(mQueueDepthMax, queueDepth);
+            mBitmapBytes = bitmapBytes;
+        }
+
+        DoodleView.RenderMetricsListener listener = mListener;
+        if (listener != null) {
+            mFrame.durationNanos = durationNanos;
+            mFrame.fullRedraw = mFullRedraw;
+            mFrame.keyFrame = mKeyFrame;
+            mFrame.replayedSteps = mReplayedSteps;
+            mFrame.queueDepth = queueDepth;
+            mFrame.bitmapBytes = bitmapBytes;
+            listener.onFrameMetrics(mFrame);
+        }
+    }
+
+    synchronized DoodleMetrics snapshot() {
+        return new DoodleMetrics(
+                mDrawDurationNanos.copy(),
+                mReplayedStepsPerFrame.copy(),
+                mFrameCount,
+                mFullRedrawCount,
+                mKeyFrameHitCount,
+                mKeyFrameMissCount,
+                mReplayedStepCount,
+                mQueueDepth,
+                mQueueDepthMax,
+                mBitmapBytes);
+    }
+
+    /**
+     * 清空累计的数据, 最近一次的队列长度和 Bitmap 字节数保留
+     */
+    synchronized void reset() {
+        mDrawDurationNanos.reset();
+        mReplayedStepsPerFrame.reset();
+        mFrameCount = 0;
+        mFullRedrawCount = 0;
+        mKeyFrameHitCount = 0;
+        mKeyFrameMissCount = 0;
+        mReplayedStepCount = 0;
+        mQueueDepthMax = mQueueDepth;
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.idonans.doodle;
+
+import com.idonans.acommon.lang.CommonLog;
+
+import java.util.Arrays;
+
+/**
+ * 将取出的触摸采样转换为绘画手势, 连续的单指移动采样合并为一个 ScrollGestureAction.
+ * 绘画手势对象都是复用的, 轨迹点数组只在单次手势的轨迹点超过当前容量时扩容, 之后的转换不会创建新的对象.
+ * <p/>
+ * 只在渲染线程中使用. 每次取出采样之后需要调用 {@link #flush()} 交出尚未处理的轨迹点.
+ * Created by pengji on 16-7-30.
+ */
+abstract class TouchSampleBatcher implements TouchSampleRing.Sink {
+
+    private static final String TAG = "TouchSampleBatcher";
+
+    private float mDownX;
+    private float mDownY;
+    // 尚未处理的单指移动轨迹点 (x0, y0, x1, y1, ...)
+    private float[] mScrollPoints = new float[64];
+    private int mScrollPointCount;
+
+    // 复用的绘画手势. 绘画步骤和画刷不会保留这些对象
+    private final DoodleView.CancelGestureAction mCancelGestureAction = new DoodleView.CancelGestureAction();
+    private final DoodleView.SinglePointGestureAction mSinglePointGestureAction = new DoodleView.SinglePointGestureAction(0f, 0f);
+    private final DoodleView.ScrollGestureAction mScrollGestureAction = new DoodleView.ScrollGestureAction(0f, 0f, mScrollPoints, 0);
+
+    /**
+     * 处理转换之后的绘画手势. 手势对象会被复用, 只在该方法执行期间有效
+     */
+    protected abstract void onGestureAction(DoodleView.GestureAction gestureAction);
+
+    @Override
+    public void onSample(int type, float x, float y) {
+        if (type == TouchSampleRing.TYPE_SCROLL_MOVE) {
+            if (mScrollPointCount * 2 + 2 > mScrollPoints.length) {
+                mScrollPoints = Arrays.copyOf(mScrollPoints, mScrollPoints.length * 2);
+            }
+            mScrollPoints[mScrollPointCount * 2] = x;
+            mScrollPoints[mScrollPointCount * 2 + 1] = y;
+            mScrollPointCount++;
+            return;
+        }
+
+        flush();
+        switch (type) {
+            case TouchSampleRing.TYPE_CANCEL:
+                onGestureAction(mCancelGestureAction);
+                break;
+            case TouchSampleRing.TYPE_SINGLE_POINT:
+                mSinglePointGestureAction.set(x, y);
+                onGestureAction(mSinglePointGestureAction);
+                break;
+            case TouchSampleRing.TYPE_SCROLL_START:
+                mDownX = x;
+                mDownY = y;
+                break;
+            default:
+                CommonLog.e(TAG + " unknown touch sample type " + type);
+                break;
+        }
+    }
+
+    /**
+     * 将尚未处理的单指移动轨迹点合并为一个 ScrollGestureAction 交出
+     */
+    public void flush() {
+        if (mScrollPointCount <= 0) {
+            return;
+        }
+        mScrollGestureAction.set(mDownX, mDownY, mScrollPoints, mScrollPointCount);
+        onGestureAction(mScrollGestureAction);
+        mScrollPointCount = 0;
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.idonans.doodle;
+
+/**
+ * 单生产者单消费者的触摸采样环形缓冲区, 不加锁. ui 线程写入画布坐标系中的触摸采样, 渲染线程批量取出.
+ * 写入时从不阻塞，缓冲区满时放弃新的采样并返回 false.
+ * Created by pengji on 16-7-28.
+ */
+final class TouchSampleRing {
+
+    /**
+     * 手势取消，开启一个新的手势或者标记上一个手势完结, 没有坐标
+     */
+    static final int TYPE_CANCEL = 1;
+    /**
+     * 单指点击的位置
+     */
+    static final int TYPE_SINGLE_POINT = 2;
+    /**
+     * 单指移动开始, 坐标是手势按下的位置
+     */
+    static final int TYPE_SCROLL_START = 3;
+    /**
+     * 单指移动的一个轨迹点
+     */
+    static final int TYPE_SCROLL_MOVE = 4;
+
+    // 为非轨迹点的采样保留的空间, 轨迹点把缓冲区写满时，手势的开始和结束仍然可以写入
+    private static final int RESERVED_SIZE = 16;
+
+    /**
+     * 渲染线程中依次处理取出的采样
+     */
+    interface Sink {
+        void onSample(int type, float x, float y);
+    }
+
+    private final int mCapacity;
+    private final int mMask;
+    private final int[] mTypes;
+    private final float[] mValues;
+
+    // 写入和读取的位置都只增加不减少, 使用时对容量取模. 溢出之后的差值仍然正确
+    // mWriteIndex 只由生产者修改, mReadIndex 只由消费者修改, volatile 保证采样数据的可见性
+    private volatile int mWriteIndex;
+    private volatile int mReadIndex;
+
+    /**
+     * @param capacity 可以容纳的采样数量, 会调整为 2 的幂
+     */
+    TouchSampleRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, RESERVED_SIZE * 2) - 1) << 1;
+        mCapacity = size;
+        mMask = size - 1;
+        mTypes = new int[size];
+        mValues = new float[size * 2];
+    }
+
+    /**
+     * 生产者线程调用. 写入一个采样，缓冲区已满时返回 false.
+     */
+    boolean offer(int type, float x, float y) {
+        final int write = mWriteIndex;
+        final int free = mCapacity - (write - mReadIndex);
+        if (free <= 0 || (type == TYPE_SCROLL_MOVE && free <= RESERVED_SIZE)) {
+            return false;
+        }
+
+        final int index = write & mMask;
+        mTypes[index] = type;
+        mValues[index * 2] = x;
+        mValues[index * 2 + 1] = y;
+        // 写入 volatile 之后，消费者可以看到之前写入的采样数据
+        mWriteIndex = write + 1;
+        return true;
+    }
+
+    /**
+     * 消费者线程调用. 取出目前所有的采样并依次交给 sink 处理, 返回取出的采样数量.
+     */
+    int drain(Sink sink) {
+        final int write = mWriteIndex;
+        int read = mReadIndex;
+        final int count = write - read;
+        for (; read != write; read++) {
+            final int index = read & mMask;
+            sink.onSample(mTypes[index], mValues[index * 2], mValues[index * 2 + 1]);
+        }
+        // 处理完之后才释放空间
+        mReadIndex = read;
+        return count;
+    }
+
+    /**
+     * 当前缓冲区中的采样数量, 可以在任意线程调用
+     */
+    int size() {
+        return mWriteIndex - mReadIndex;
+    }
+
+}
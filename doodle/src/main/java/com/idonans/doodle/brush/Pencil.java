@@ -43,17 +43,19 @@ public class Pencil extends Brush {
         // 铅笔可以用来画点
         if (gestureAction instanceof DoodleView.SinglePointGestureAction) {
             DoodleView.SinglePointGestureAction singlePointGestureAction = (DoodleView.SinglePointGestureAction) gestureAction;
-            return new PointDrawStep(this, singlePointGestureAction.event.getX(), singlePointGestureAction.event.getY());
+            return new PointDrawStep(this, singlePointGestureAction.getX(), singlePointGestureAction.getY());
         }
 
         // 铅笔可以用来自由绘制
         if (gestureAction instanceof DoodleView.ScrollGestureAction) {
             DoodleView.ScrollGestureAction scrollGestureAction = (DoodleView.ScrollGestureAction) gestureAction;
             ScribbleDrawStep drawStep = new ScribbleDrawStep(this,
-                    scrollGestureAction.downEvent.getX(),
-                    scrollGestureAction.downEvent.getY());
-            drawStep.toPoint(scrollGestureAction.currentEvent.getX(),
-                    scrollGestureAction.currentEvent.getY());
+                    scrollGestureAction.getDownX(),
+                    scrollGestureAction.getDownY());
+            final int pointCount = scrollGestureAction.getPointCount();
+            for (int i = 0; i < pointCount; i++) {
+                drawStep.toPoint(scrollGestureAction.getX(i), scrollGestureAction.getY(i));
+            }
             return drawStep;
         }
 
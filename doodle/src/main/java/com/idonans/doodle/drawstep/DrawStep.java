@@ -1,12 +1,16 @@
 package com.idonans.doodle.drawstep;
 
 import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
 import android.support.annotation.NonNull;
 
 import com.idonans.doodle.DoodleView;
 import com.idonans.doodle.brush.Brush;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * 一个绘画步骤
@@ -47,6 +51,21 @@ public abstract class DrawStep implements SubStep {
         return false;
     }
 
+    /**
+     * 获取并清空自上一次调用以来，绘画内容发生变化的区域(画布坐标, 已包含画笔的宽度). 没有变化时 outBounds 为空.
+     * 如果无法确定变化的区域返回 false, 此时需要重新绘制整个画布.
+     */
+    public boolean takeDirtyBounds(@NonNull RectF outBounds) {
+        return false;
+    }
+
+    /**
+     * 绘制一个坐标点时可能影响到的范围(半径), 包含画笔的宽度以及抗锯齿的边缘
+     */
+    protected static float getDrawRadius(@NonNull Paint paint) {
+        return paint.getStrokeWidth() / 2 + 2;
+    }
+
     /**
      * 是否有有效的绘画内容, 如画点，画线等. 不具有有效绘画内容的步骤可能会被忽略。
      */
@@ -62,6 +81,17 @@ public abstract class DrawStep implements SubStep {
             return false;
         }
 
+        if (drawSteps instanceof List && drawSteps instanceof RandomAccess) {
+            // 按照下标遍历，不创建 Iterator (绘画过程中每一个手势都会调用)
+            List<DrawStep> list = (List<DrawStep>) drawSteps;
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i).hasDrawContent()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         for (DrawStep drawStep : drawSteps) {
             if (drawStep.hasDrawContent()) {
                 return true;
@@ -0,0 +1,80 @@
+package com.idonans.doodle.drawstep;
+
+import com.idonans.doodle.DoodleData;
+import com.idonans.doodle.DoodleDataUtil;
+import com.idonans.doodle.PointBuffer;
+import com.idonans.doodle.editor.DoodleDataReader;
+
+/**
+ * 将 dd 文件的读取事件直接构建为绘画步骤, 不经过 DoodleData.DrawStepData
+ * Created by pengji on 16-7-21.
+ */
+public abstract class DrawStepBuilder implements DoodleDataReader.Handler {
+
+    private final DoodleData.BrushData mBrushData = new DoodleData.BrushData();
+    private boolean mHasBrush;
+    private int mDrawStepType;
+    private boolean mDrawStepRedo;
+
+    // 当前绘画步骤的坐标点, 在步骤结束时使用
+    private PointBuffer mPoints = new PointBuffer(64);
+
+    @Override
+    public void onDrawStepBegin(boolean redo, int drawStepType) {
+        mDrawStepRedo = redo;
+        mDrawStepType = drawStepType;
+        mHasBrush = false;
+        mPoints.clear();
+    }
+
+    @Override
+    public void onPoint(float x, float y) {
+        mPoints.add(x, y);
+    }
+
+    @Override
+    public void onBrush(int brushType, int color, int size, int alpha) {
+        mBrushData.type = brushType;
+        mBrushData.color = color;
+        mBrushData.size = size;
+        mBrushData.alpha = alpha;
+        mHasBrush = true;
+    }
+
+    @Override
+    public void onDrawStepEnd() {
+        onDrawStep(mDrawStepRedo, createDrawStep());
+    }
+
+    private DrawStep createDrawStep() {
+        if (mDrawStepType == DoodleData.DRAW_STEP_TYPE_EMPTY) {
+            return new EmptyDrawStep();
+        }
+
+        if (!mHasBrush) {
+            throw new IllegalArgumentException("brush not found for draw step type " + mDrawStepType);
+        }
+        if (mPoints.isEmpty()) {
+            throw new IllegalArgumentException("point not found for draw step type " + mDrawStepType);
+        }
+
+        if (mDrawStepType == DoodleData.DRAW_STEP_TYPE_SCRIBBLE) {
+            // 坐标点直接交给绘画步骤，之后的步骤使用新的缓冲区
+            PointBuffer points = mPoints.freeze();
+            mPoints = new PointBuffer(64);
+            return new ScribbleDrawStep(DoodleDataUtil.createBrush(mBrushData), points);
+        } else if (mDrawStepType == DoodleData.DRAW_STEP_TYPE_POINT) {
+            return new PointDrawStep(DoodleDataUtil.createBrush(mBrushData), mPoints.get(0), mPoints.get(1));
+        } else {
+            throw new IllegalArgumentException("unknown draw step type " + mDrawStepType);
+        }
+    }
+
+    /**
+     * 一个绘画步骤构建完成
+     *
+     * @param redo 该步骤是否属于 redo 区
+     */
+    protected abstract void onDrawStep(boolean redo, DrawStep drawStep);
+
+}
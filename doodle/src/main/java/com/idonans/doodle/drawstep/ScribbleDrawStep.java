@@ -3,9 +3,11 @@ package com.idonans.doodle.drawstep;
 import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.RectF;
 import android.support.annotation.NonNull;
 
 import com.idonans.doodle.DoodleView;
+import com.idonans.doodle.PointBuffer;
 import com.idonans.doodle.brush.Brush;
 
 import java.util.ArrayList;
@@ -21,8 +23,19 @@ public class ScribbleDrawStep extends DrawStep {
     private final Path mPath;
     private float mPreX;
     private float mPreY;
+    // 路径当前的终点
+    private float mPathX;
+    private float mPathY;
 
-    private final ArrayList<Float> mAllPoints;
+    // 自上一次 takeDirtyBounds 以来新增的曲线段所在的区域(不含画笔的宽度)
+    private boolean mDirty;
+    private float mDirtyLeft;
+    private float mDirtyTop;
+    private float mDirtyRight;
+    private float mDirtyBottom;
+
+    // 可能已经被冻结并与其它对象共享，追加坐标点之前需要检查
+    private PointBuffer mAllPoints;
 
     /**
      * 自由绘制
@@ -35,26 +48,125 @@ public class ScribbleDrawStep extends DrawStep {
         mPath.moveTo(x, y);
         mPreX = x;
         mPreY = y;
+        mPathX = x;
+        mPathY = y;
 
-        mAllPoints = new ArrayList<>();
-        mAllPoints.add(x);
-        mAllPoints.add(y);
+        mAllPoints = new PointBuffer();
+        mAllPoints.add(x, y);
     }
 
-    public ArrayList<Float> getAllPoints() {
+    /**
+     * 使用指定的坐标点创建自由绘制, 至少需要包含一个坐标点. 已经冻结的坐标点直接共享，否则复制一份.
+     */
+    public ScribbleDrawStep(@NonNull Brush brush, @NonNull PointBuffer points) {
+        super(brush);
+        mPaint = brush.createPaint();
+
+        checkSize(points.size());
+        if (points.isEmpty()) {
+            throw new IllegalArgumentException("point not found");
+        }
+
+        mAllPoints = points.isFrozen() ? points : new PointBuffer(points);
+
+        mPath = new Path();
+        mPreX = mAllPoints.get(0);
+        mPreY = mAllPoints.get(1);
+        mPath.moveTo(mPreX, mPreY);
+        mPathX = mPreX;
+        mPathY = mPreY;
+        int size = mAllPoints.size();
+        for (int i = 2; i < size; i += 2) {
+            float x = mAllPoints.get(i);
+            float y = mAllPoints.get(i + 1);
+            mPathX = (mPreX + x) / 2;
+            mPathY = (mPreY + y) / 2;
+            mPath.quadTo(mPreX, mPreY, mPathX, mPathY);
+            mPreX = x;
+            mPreY = y;
+        }
+    }
+
+    /**
+     * 所有的坐标点, 返回的缓冲区可能已经被冻结
+     */
+    public PointBuffer getPoints() {
         return mAllPoints;
     }
 
+    /**
+     * 冻结并返回所有的坐标点, 可以直接共享. 之后如果继续追加坐标点，会先复制一份再追加.
+     */
+    public PointBuffer freezePoints() {
+        return mAllPoints.freeze();
+    }
+
+    /**
+     * @deprecated 每一个坐标值都会装箱, 使用 {@link #getPoints()}
+     */
+    @Deprecated
+    public ArrayList<Float> getAllPoints() {
+        return mAllPoints.toList();
+    }
+
     /**
      * 绘画平滑曲线
      */
     public void toPoint(float x, float y) {
         // 使用贝塞尔去绘制，线条更平滑
-        mPath.quadTo(mPreX, mPreY, (mPreX + x) / 2, (mPreY + y) / 2);
+        float endX = (mPreX + x) / 2;
+        float endY = (mPreY + y) / 2;
+        mPath.quadTo(mPreX, mPreY, endX, endY);
+
+        // 新增的曲线段位于起点，控制点和终点组成的三角形之内
+        addDirty(mPathX, mPathY);
+        addDirty(mPreX, mPreY);
+        addDirty(endX, endY);
+        if (isFill(mPaint)) {
+            // 填充的区域由路径的终点与起点闭合，终点移动时，起点与新旧终点之间的区域都会变化
+            addDirty(mAllPoints.get(0), mAllPoints.get(1));
+        }
+
+        mPathX = endX;
+        mPathY = endY;
         mPreX = x;
         mPreY = y;
-        mAllPoints.add(x);
-        mAllPoints.add(y);
+        if (mAllPoints.isFrozen()) {
+            // 已经共享出去的坐标点不能修改
+            mAllPoints = new PointBuffer(mAllPoints);
+        }
+        mAllPoints.add(x, y);
+    }
+
+    private void addDirty(float x, float y) {
+        if (!mDirty) {
+            mDirty = true;
+            mDirtyLeft = x;
+            mDirtyTop = y;
+            mDirtyRight = x;
+            mDirtyBottom = y;
+            return;
+        }
+        mDirtyLeft = Math.min(mDirtyLeft, x);
+        mDirtyTop = Math.min(mDirtyTop, y);
+        mDirtyRight = Math.max(mDirtyRight, x);
+        mDirtyBottom = Math.max(mDirtyBottom, y);
+    }
+
+    @Override
+    public boolean takeDirtyBounds(@NonNull RectF outBounds) {
+        if (mSubStepHelper != null) {
+            // 单步操作时绘制的内容由 SubStepHelper 决定
+            return false;
+        }
+        if (!mDirty) {
+            outBounds.setEmpty();
+            return true;
+        }
+        float radius = getDrawRadius(mPaint);
+        outBounds.set(mDirtyLeft - radius, mDirtyTop - radius, mDirtyRight + radius, mDirtyBottom + radius);
+        mDirty = false;
+        return true;
     }
 
     @Override
@@ -65,15 +177,11 @@ public class ScribbleDrawStep extends DrawStep {
 
         DoodleView.ScrollGestureAction scrollGestureAction = (DoodleView.ScrollGestureAction) gestureAction;
 
-        // 快速滑动时，在两次 ACTION_MOVE 之间可能有未绘制的点，从历史中找回
-        int historySize = scrollGestureAction.currentEvent.getHistorySize();
-        for (int i = 0; i < historySize; i++) {
-            toPoint(scrollGestureAction.currentEvent.getHistoricalX(i),
-                    scrollGestureAction.currentEvent.getHistoricalY(i));
+        // 依次绘制自上一次以来新增的所有轨迹点, 包括快速滑动时两次 ACTION_MOVE 之间的点
+        final int pointCount = scrollGestureAction.getPointCount();
+        for (int i = 0; i < pointCount; i++) {
+            toPoint(scrollGestureAction.getX(i), scrollGestureAction.getY(i));
         }
-
-        toPoint(scrollGestureAction.currentEvent.getX(),
-                scrollGestureAction.currentEvent.getY());
         return true;
     }
 
@@ -97,7 +205,7 @@ public class ScribbleDrawStep extends DrawStep {
     @Override
     public void resetSubStep() {
         int subStepCount = 0;
-        ArrayList<Float> allPoints = new ArrayList<>(mAllPoints);
+        PointBuffer allPoints = freezePoints();
         if (allPoints.size() > 2) {
             subStepCount = (allPoints.size() - 2) / 2;
         }
@@ -120,41 +228,118 @@ public class ScribbleDrawStep extends DrawStep {
     }
 
 
+    /**
+     * 画笔是否填充路径 (FILL 或者 FILL_AND_STROKE), 填充的区域由路径的终点与起点闭合
+     */
+    private static boolean isFill(Paint paint) {
+        return paint.getStyle() != Paint.Style.STROKE;
+    }
+
     private static class SubStepHelper extends Helper {
 
+        // 每一个路径段包含的移动点数量
+        private static final int SEGMENT_SIZE = 32;
+
         private final Paint mPaint;
+        // 填充时每一个路径段都从起始点出发(扇形), 组合之后的环绕数与单一路径相同
+        private final boolean mFill;
+        // 每一个路径段包含的移动点数量. 同时填充和描边时扇形的连线也会被描边, 只使用一个路径段
+        private final int mSegmentSize;
 
-        private final Path mPath;
+        private final PointBuffer mAllPoints;
+
+        // 已经完整的路径段, 第 i 段包含第 i * mSegmentSize 到 (i + 1) * mSegmentSize - 1 个移动的点
+        private final ArrayList<Path> mSegments = new ArrayList<>();
+        // 最后一个不完整的路径段, 向左移动时只需要重建这一段
+        private Path mTail;
         private float mPreX;
         private float mPreY;
 
-        private final ArrayList<Float> mAllPoints;
+        // 绘制使用的完整路径. 向右移动时直接追加, 向左移动之后在下一次绘制时由所有的路径段重新组合
+        private final Path mPath;
+        private boolean mPathDirty;
 
-        public SubStepHelper(Paint paint, ArrayList<Float> allPoints, int count) {
+        public SubStepHelper(Paint paint, PointBuffer allPoints, int count) {
             super(count);
             mPaint = paint;
+            mFill = isFill(paint);
+            mSegmentSize = paint.getStyle() == Paint.Style.FILL_AND_STROKE ? Integer.MAX_VALUE : SEGMENT_SIZE;
             mAllPoints = allPoints;
 
             checkSize(mAllPoints.size());
 
             mPath = new Path();
-            resetPath();
+            mTail = new Path();
+            resetTail(0);
         }
 
-        private void resetPath() {
-            float x = mAllPoints.get(0);
-            float y = mAllPoints.get(1);
+        private float getX(int pointIndex) {
+            return mAllPoints.get(pointIndex * 2);
+        }
 
-            mPath.reset();
-            mPath.moveTo(x, y);
-            mPreX = x;
-            mPreY = y;
+        private float getY(int pointIndex) {
+            return mAllPoints.get(pointIndex * 2 + 1);
+        }
+
+        /**
+         * 重置最后一个路径段, 使其从第 start 个移动的点(从 0 开始)开始追加
+         */
+        private void resetTail(int start) {
+            // 第 start 个移动的点之前的点, 即当前路径的控制点
+            float preX = getX(start);
+            float preY = getY(start);
+            mTail.rewind();
+            if (start == 0) {
+                mTail.moveTo(preX, preY);
+                if (!mPathDirty) {
+                    mPath.moveTo(preX, preY);
+                }
+            } else {
+                // 当前路径的终点
+                float x = (getX(start - 1) + preX) / 2;
+                float y = (getY(start - 1) + preY) / 2;
+                if (mFill) {
+                    mTail.moveTo(getX(0), getY(0));
+                    mTail.lineTo(x, y);
+                    if (!mPathDirty) {
+                        mPath.moveTo(getX(0), getY(0));
+                        mPath.lineTo(x, y);
+                    }
+                } else {
+                    mTail.moveTo(x, y);
+                    if (!mPathDirty) {
+                        mPath.moveTo(x, y);
+                    }
+                }
+            }
+            mPreX = preX;
+            mPreY = preY;
         }
 
-        public void toPoint(float x, float y) {
-            mPath.quadTo(mPreX, mPreY, (mPreX + x) / 2, (mPreY + y) / 2);
+        /**
+         * 在现有 path 后面追加第 index 个移动的点(从 0 开始), 追加之后路径中包含 index + 1 个移动的点
+         */
+        private void appendPoint(int index) {
+            float x = getX(1/*起始点*/ + index);
+            float y = getY(1/*起始点*/ + index);
+            float endX = (mPreX + x) / 2;
+            float endY = (mPreY + y) / 2;
+            mTail.quadTo(mPreX, mPreY, endX, endY);
+            if (!mPathDirty) {
+                mPath.quadTo(mPreX, mPreY, endX, endY);
+            }
             mPreX = x;
             mPreY = y;
+
+            int appended = index + 1;
+            if (appended % mSegmentSize == 0) {
+                // 当前路径段已经完整, 之后的点追加到新的路径段
+                mSegments.add(mTail);
+                mTail = new Path();
+                if (appended < getCount()) {
+                    resetTail(appended);
+                }
+            }
         }
 
         @Override
@@ -166,20 +351,21 @@ public class ScribbleDrawStep extends DrawStep {
                 // 向右移动
                 for (int i = 0; i < movedCountThis; i++) {
                     // 在现有 path 后面追加移动的点
-                    int indexAppendX = (1/*起始点*/ + movedCountBefore/*之前移动的点*/ + i/*本次移动的点*/) * 2/*每一点（一个坐标）对应两个位置*/;
-                    int indexAppendY = indexAppendX + 1;
-                    toPoint(mAllPoints.get(indexAppendX), mAllPoints.get(indexAppendY));
+                    appendPoint(movedCountBefore/*之前移动的点*/ + i/*本次移动的点*/);
                 }
             } else if (movedCountThis < 0) {
                 // 向左移动
-                // path 不支持回退，需要从起始点重新绘制
+                // path 不支持回退，丢弃之后的路径段, 只重建最后一个不完整的路径段 (最多 mSegmentSize - 1 个点)
+                mPathDirty = true;
                 int moved = getMoved(); /*相当于 (movedCountBefore + movedCountThis)*/
-                resetPath();
-                for (int i = 0; i < moved; i++) {
-                    // 从起始点依次追加到当前移动的位置
-                    int indexAppendX = (1/*起始点*/ + i/*追加的点*/) * 2/*每一点（一个坐标）对应两个位置*/;
-                    int indexAppendY = indexAppendX + 1;
-                    toPoint(mAllPoints.get(indexAppendX), mAllPoints.get(indexAppendY));
+                int segmentCount = moved / mSegmentSize;
+                while (mSegments.size() > segmentCount) {
+                    mSegments.remove(mSegments.size() - 1);
+                }
+                int start = segmentCount * mSegmentSize;
+                resetTail(start);
+                for (int i = start; i < moved; i++) {
+                    appendPoint(i);
                 }
             }
 
@@ -190,6 +376,15 @@ public class ScribbleDrawStep extends DrawStep {
         public void onDraw(@NonNull Canvas canvas) {
             int moved = getMoved();
             if (moved > 0) {
+                if (mPathDirty) {
+                    // 笔刷使用圆形的端点和连接, 分段描边与单一路径描边的结果相同
+                    mPath.rewind();
+                    for (Path segment : mSegments) {
+                        mPath.addPath(segment);
+                    }
+                    mPath.addPath(mTail);
+                    mPathDirty = false;
+                }
                 canvas.drawPath(mPath, mPaint);
             }
         }
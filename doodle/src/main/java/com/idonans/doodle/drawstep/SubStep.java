@@ -35,37 +35,13 @@ public interface SubStep {
      */
     int moveSubStepBy(int count);
 
-    abstract class Helper {
-
-        private final int mCount;
-        private int mMoved;
+    /**
+     * 子步骤的计数见 doodle-core 中的 SubStepCounter, 这里只增加绘制
+     */
+    abstract class Helper extends SubStepCounter {
 
         public Helper(int count) {
-            if (count < 0) {
-                throw new IllegalArgumentException("count must >= 0");
-            }
-            mCount = count;
-        }
-
-        public int getMoved() {
-            return mMoved;
-        }
-
-        public int getCount() {
-            return mCount;
-        }
-
-        public int moveBy(int count) {
-            int tmpMoved = mMoved + count;
-            if (tmpMoved < 0) {
-                tmpMoved = 0;
-            } else if (tmpMoved > mCount) {
-                tmpMoved = mCount;
-            }
-
-            int movedCountThis = tmpMoved - mMoved;
-            mMoved = tmpMoved;
-            return movedCountThis;
+            super(count);
         }
 
         public abstract void onDraw(@NonNull Canvas canvas);
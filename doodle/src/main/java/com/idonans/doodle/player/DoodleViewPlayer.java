@@ -3,6 +3,8 @@ package com.idonans.doodle.player;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
 import android.util.AttributeSet;
@@ -13,16 +15,11 @@ import android.widget.Toast;
 import com.idonans.acommon.AppContext;
 import com.idonans.acommon.lang.Available;
 import com.idonans.acommon.lang.CommonLog;
-import com.idonans.acommon.lang.TaskQueue;
 import com.idonans.acommon.util.ViewUtil;
-import com.idonans.doodle.DoodleData;
 import com.idonans.doodle.DoodleView;
 import com.idonans.doodle.R;
 import com.idonans.doodle.editor.DoodleDataEditor;
-import com.idonans.doodle.editor.v1.DoodleDataEditorV1;
-
-import java.util.ArrayList;
-import java.util.Collections;
+import com.idonans.doodle.util.DoodleTrace;
 
 /**
  * DoodleView 播放器
@@ -32,9 +29,15 @@ public class DoodleViewPlayer extends FrameLayout {
 
     private static final String TAG = "DoodleViewPlayer";
     private DoodleView mDoodleView;
-    private TaskQueue mTaskQueue;
     private PlayController mPlayController;
     private long mSpeedDelay = 10L;
+    // 按照绘制时间预算播放时每一帧的预算(ms), 0 表示逐个子步骤播放
+    private long mFrameBudget;
+
+    /**
+     * 按照绘制时间预算播放时，每一帧的时间间隔(ms)
+     */
+    private static final long FRAME_INTERVAL = 16L;
 
     public DoodleViewPlayer(Context context) {
         super(context);
@@ -68,15 +71,23 @@ public class DoodleViewPlayer extends FrameLayout {
 
         mDoodleView = ViewUtil.findViewByID(this, R.id.doodle_view);
         mDoodleView.setReadOnly(true);
-
-        mTaskQueue = new TaskQueue(1);
     }
 
+    // 所有播放器共用的调度线程, 按照时间执行播放控制器中的任务, 两次任务之间线程处于空闲状态
+    private static Handler sHandler;
+
     /**
      * package, used by PlayController
      */
-    TaskQueue getTaskQueue() {
-        return mTaskQueue;
+    static Handler getHandler() {
+        synchronized (DoodleViewPlayer.class) {
+            if (sHandler == null) {
+                HandlerThread handlerThread = new HandlerThread(TAG);
+                handlerThread.start();
+                sHandler = new Handler(handlerThread.getLooper());
+            }
+            return sHandler;
+        }
     }
 
     /**
@@ -100,6 +111,22 @@ public class DoodleViewPlayer extends FrameLayout {
         mSpeedDelay = speedDelay;
     }
 
+    public long getFrameBudget() {
+        return mFrameBudget;
+    }
+
+    /**
+     * 设置按照绘制时间预算播放(ms). 大于 0 时，每一帧恢复尽可能多的子步骤, 使得绘制大约在该时间内完成，
+     * 并且每一个 vsync 至多绘制一次, 此时忽略播放速度延迟, 用于快速播放. 设置为 0 时逐个子步骤播放(默认).
+     */
+    public void setFrameBudget(long frameBudget) {
+        if (frameBudget < 0) {
+            frameBudget = 0;
+        }
+        mFrameBudget = frameBudget;
+        mDoodleView.setDrawOnVsync(frameBudget > 0);
+    }
+
     /**
      * 设置播放资源, dd 文件路径
      */
@@ -117,43 +144,51 @@ public class DoodleViewPlayer extends FrameLayout {
         playController.prepareing(new Runnable() {
             @Override
             public void run() {
-                Object[] ret = DoodleDataEditorV1Loader.load(ddFilePath, ignoreEmptyDrawStep);
-
-                final int errorCodeDDFile = (int) ret[0];
+                final int errorCodeDDFile = DoodleDataLoader.check(ddFilePath);
                 if (errorCodeDDFile == ERROR_CODE_DD_FILE_OK) {
-                    // dd 文件解析成功
-                    DoodleData doodleData = (DoodleData) ret[1];
-                    // play doodle data
-                    resetDoodleData(doodleData);
-
-                    if (playController.isAvailable()) {
-                        mDoodleView.load(doodleData);
+                    if (!playController.isAvailable()) {
+                        return;
                     }
 
-                    playController.prepared(new Runnable() {
+                    // 流式载入 dd 文件，所有绘画步骤作为 redo 载入，播放时依次恢复
+                    mDoodleView.load(ddFilePath, ignoreEmptyDrawStep, true, new DoodleView.ActionCallback() {
                         @Override
-                        public void run() {
-                            if (autoPlay) {
-                                // 准备完成之后自动播放
-                                play();
+                        public void onActionResult(boolean success) {
+                            if (success) {
+                                // dd 文件解析成功
+                                playController.prepared(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        if (autoPlay) {
+                                            // 准备完成之后自动播放
+                                            play();
+                                        }
+                                    }
+                                });
+                            } else {
+                                onDDFileError(playController, ERROR_CODE_DD_FILE_ERROR);
                             }
                         }
                     });
                 } else {
-                    // 播放资源加载失败
-                    playController.error(new Runnable() {
-                        @Override
-                        public void run() {
-                            // 清空 doodle view
-                            mDoodleView.setAspectRatio(1, 1);
-                            showDDFileErrorMessage(errorCodeDDFile);
-                        }
-                    });
+                    onDDFileError(playController, errorCodeDDFile);
                 }
             }
         });
     }
 
+    private void onDDFileError(PlayController playController, final int errorCodeDDFile) {
+        // 播放资源加载失败
+        playController.error(new Runnable() {
+            @Override
+            public void run() {
+                // 清空 doodle view
+                mDoodleView.setAspectRatio(1, 1);
+                showDDFileErrorMessage(errorCodeDDFile);
+            }
+        });
+    }
+
     public void pause() {
         if (mPlayController != null) {
             mPlayController.pause(new Runnable() {
@@ -171,12 +206,38 @@ public class DoodleViewPlayer extends FrameLayout {
         }
     }
 
+    /**
+     * 相对于当前播放位置移动指定的子步骤数量(带方向)
+     */
     public void seekBy(int seekSize) {
         if (mPlayController != null) {
             startSeekBy(mPlayController, seekSize);
         }
     }
 
+    /**
+     * 移动到指定的播放位置, 取值范围 [0, getDuration()]
+     */
+    public void seekTo(int position) {
+        if (mPlayController != null) {
+            startSeekTo(mPlayController, position);
+        }
+    }
+
+    /**
+     * 播放的总长度(子步骤总数), 资源准备完成之后有效
+     */
+    public int getDuration() {
+        return mDoodleView.getPlayDuration();
+    }
+
+    /**
+     * 当前的播放位置(已经播放的子步骤数量)
+     */
+    public int getPosition() {
+        return mDoodleView.getPlayPosition();
+    }
+
     public void stop() {
         if (mPlayController != null) {
             mPlayController.stop(new Runnable() {
@@ -210,17 +271,6 @@ public class DoodleViewPlayer extends FrameLayout {
         }
     }
 
-    private static void resetDoodleData(@NonNull DoodleData doodleData) {
-        // 清空现有的 redo, 并将现有绘画步骤全部移动到 redo 中
-        doodleData.drawStepDatasRedo = null;
-        ArrayList<DoodleData.DrawStepData> drawStepDatas = doodleData.drawStepDatas;
-        doodleData.drawStepDatas = null;
-        if (drawStepDatas != null && drawStepDatas.size() > 0) {
-            Collections.reverse(drawStepDatas);
-            doodleData.drawStepDatasRedo = drawStepDatas;
-        }
-    }
-
     public static final int ERROR_CODE_DD_FILE_OK = 0;
     /**
      * dd 文件没有找到
@@ -235,38 +285,26 @@ public class DoodleViewPlayer extends FrameLayout {
      */
     public static final int ERROR_CODE_DD_FILE_ERROR = 3;
 
-    private static class DoodleDataEditorV1Loader {
+    private static class DoodleDataLoader {
 
-        public static Object[] load(final String ddFilePath, final boolean ignoreEmptyDrawStep) {
-            Object[] ret = new Object[2];
-            ret[0] = ERROR_CODE_DD_FILE_OK;
+        /**
+         * 校验 dd 文件是否可以播放，返回对应的错误码
+         */
+        public static int check(final String ddFilePath) {
             if (TextUtils.isEmpty(ddFilePath)) {
-                ret[0] = ERROR_CODE_DD_FILE_NOT_FOUND;
-                return ret;
+                return ERROR_CODE_DD_FILE_NOT_FOUND;
             }
 
             int version = DoodleDataEditor.getVersion(ddFilePath);
             if (version == -1) {
                 // 文件解析错误
-                ret[0] = ERROR_CODE_DD_FILE_ERROR;
-                return ret;
-            } else if (version == 1) {
-                // 版本 1
-                DoodleData doodleData = DoodleDataEditorV1.readFromFile(ddFilePath, ignoreEmptyDrawStep);
-                if (doodleData == null) {
-                    // 版本 1 dd 文件解析失败
-                    ret[0] = ERROR_CODE_DD_FILE_ERROR;
-                    return ret;
-                } else {
-                    // 版本 1 dd 文件解析成功
-                    ret[0] = ERROR_CODE_DD_FILE_OK;
-                    ret[1] = doodleData;
-                    return ret;
-                }
+                return ERROR_CODE_DD_FILE_ERROR;
+            } else if (version == 1 || version == 2 || version == 3) {
+                // 版本 1, 版本 2, 版本 3
+                return ERROR_CODE_DD_FILE_OK;
             } else {
                 // 不支持其他版本
-                ret[0] = ERROR_CODE_DD_FILE_VERION_UNSUPPORT;
-                return ret;
+                return ERROR_CODE_DD_FILE_VERION_UNSUPPORT;
             }
         }
     }
@@ -303,6 +341,18 @@ public class DoodleViewPlayer extends FrameLayout {
 
         @Override
         public void run() {
+            DoodleTrace.beginSection("DoodleViewPlayer.PlayEngine");
+            try {
+                step();
+            } finally {
+                DoodleTrace.endSection();
+            }
+        }
+
+        /**
+         * 播放的一步, 实际的恢复在 DoodleView 的绘制线程中进行
+         */
+        private void step() {
             if (!isAvailable()) {
                 return;
             }
@@ -311,32 +361,7 @@ public class DoodleViewPlayer extends FrameLayout {
                 @Override
                 public void onActionResult(boolean success) {
                     if (success) {
-                        final int seekSize = getSeekSize();
-                        if (seekSize > 0) {
-                            // redo
-                            mPlayer.mDoodleView.redoByStep(seekSize, new DoodleView.ActionCallback2() {
-                                @Override
-                                public void onActionResult(boolean success, int value) {
-                                    onSizeSeeked(value);
-                                    if (success && getSeekSize() != 0) {
-                                        mPlayController.pendingRunWithDelay(PlayEngine.this, getSpeedDelay());
-                                    }
-                                }
-                            });
-                        } else if (seekSize < 0) {
-                            // undo
-                            mPlayer.mDoodleView.undoByStep(-seekSize, new DoodleView.ActionCallback2() {
-                                @Override
-                                public void onActionResult(boolean success, int value) {
-                                    onSizeSeeked(-value);
-                                    if (success && getSeekSize() != 0) {
-                                        mPlayController.pendingRunWithDelay(PlayEngine.this, getSpeedDelay());
-                                    }
-                                }
-                            });
-                        } else {
-                            CommonLog.d(TAG + " no seek size");
-                        }
+                        seek();
                     } else {
                         // wait for init ok
                         mPlayController.pendingRunWithDelay(PlayEngine.this, 100L);
@@ -346,6 +371,42 @@ public class DoodleViewPlayer extends FrameLayout {
 
         }
 
+        /**
+         * 执行一次移动, 完成之后根据需要安排下一次
+         */
+        protected void seek() {
+            final long frameBudget = mPlayer.getFrameBudget();
+            if (frameBudget > 0) {
+                // 每一帧恢复时间预算内可以绘制的子步骤
+                mPlayer.mDoodleView.redoByFrameBudget(frameBudget * 1000000L, new DoodleView.ActionCallback2() {
+                    @Override
+                    public void onActionResult(boolean success, int value) {
+                        onSizeSeeked(value);
+                        if (success) {
+                            mPlayController.pendingRunWithDelay(PlayEngine.this, FRAME_INTERVAL);
+                        }
+                    }
+                });
+                return;
+            }
+
+            final int seekSize = getSeekSize();
+            if (seekSize != 0) {
+                // 向右 redo, 向左 undo, 距离较远时从播放关键帧恢复
+                mPlayer.mDoodleView.seekBy(seekSize, new DoodleView.ActionCallback2() {
+                    @Override
+                    public void onActionResult(boolean success, int value) {
+                        onSizeSeeked(value);
+                        if (success && getSeekSize() != 0) {
+                            mPlayController.pendingRunWithDelay(PlayEngine.this, getSpeedDelay());
+                        }
+                    }
+                });
+            } else {
+                CommonLog.d(TAG + " no seek size");
+            }
+        }
+
         @Override
         public boolean isAvailable() {
             return mPlayer.mPlayEngine == this
@@ -386,20 +447,22 @@ public class DoodleViewPlayer extends FrameLayout {
             CommonLog.d(TAG + " seek size is 0, ignore seek by");
             return;
         }
-        mPlayEngine = new SeekEngine(playController, this, seekSize);
+        startSeekTo(playController, getPosition() + seekSize);
+    }
+
+    private void startSeekTo(PlayController playController, int position) {
+        mPlayEngine = new SeekEngine(playController, this, Math.max(0, position));
         mPlayEngine.start();
     }
 
     private static class SeekEngine extends PlayEngine {
 
-        private int mSeekSize;
+        // 目标播放位置
+        private final int mPosition;
 
-        private SeekEngine(PlayController playController, DoodleViewPlayer player, int seekSize) {
+        private SeekEngine(PlayController playController, DoodleViewPlayer player, int position) {
             super(playController, player);
-            mSeekSize = seekSize;
-            if (mSeekSize == 0) {
-                throw new IllegalArgumentException("seek size invalid " + mSeekSize);
-            }
+            mPosition = position;
         }
 
         @Override
@@ -413,28 +476,18 @@ public class DoodleViewPlayer extends FrameLayout {
         }
 
         @Override
-        public int getSeekSize() {
-            return mSeekSize;
-        }
-
-        @Override
-        protected void onSizeSeeked(int sizeSeeked) {
-            CommonLog.d(TAG + " onSizeSeeked mSeekSize:" + mSeekSize + ", sizeSeeked:" + sizeSeeked);
-
-            if (mSeekSize > 0 && sizeSeeked > 0 && mSeekSize >= sizeSeeked) {
-                mSeekSize -= sizeSeeked;
-            } else if (mSeekSize < 0 && sizeSeeked < 0 && mSeekSize <= sizeSeeked) {
-                mSeekSize -= sizeSeeked;
-            } else if (sizeSeeked != 0) {
-                new IllegalStateException("error size seeked:" + sizeSeeked + ", mSeekSize:" + mSeekSize).printStackTrace();
-            }
-
-            if (sizeSeeked == 0 || mSeekSize == 0) {
-                // seek 完成，恢复之前的播放状态 (所有期望的 seek 已经完成 或者 当前 player 中没有更多的内容可以 seek)
-                if (isAvailable()) {
-                    resumePlayStatusAfterSeekFinished();
+        protected void seek() {
+            // 从最近的播放关键帧恢复，一次完成
+            mPlayer.mDoodleView.seekTo(mPosition, new DoodleView.ActionCallback2() {
+                @Override
+                public void onActionResult(boolean success, int value) {
+                    CommonLog.d(TAG + " seek to " + mPosition + ", success:" + success + ", position:" + value);
+                    // seek 完成，恢复之前的播放状态
+                    if (isAvailable()) {
+                        resumePlayStatusAfterSeekFinished();
+                    }
                 }
-            }
+            });
         }
 
         private void resumePlayStatusAfterSeekFinished() {
@@ -458,11 +511,6 @@ public class DoodleViewPlayer extends FrameLayout {
             }
         }
 
-        @Override
-        protected long getSpeedDelay() {
-            return 0L;
-        }
-
         @Override
         public boolean isAvailable() {
             // 在播放，暂停，完成 或者 资源已准备好的状态下可以 seek
@@ -1,10 +1,10 @@
 package com.idonans.doodle.player;
 
+import android.os.Handler;
 import android.os.SystemClock;
 
 import com.idonans.acommon.lang.Available;
 import com.idonans.acommon.lang.CommonLog;
-import com.idonans.acommon.lang.Threads;
 
 /**
  * 播放控制器
@@ -154,7 +154,8 @@ public abstract class PlayController implements Available {
 
     public abstract void error(Runnable runnable);
 
-    private PendingRunnable mPendingRunnable;
+    // 最新的待执行任务, 之前的任务被它取代
+    private volatile PendingRunnable mPendingRunnable;
 
     /**
      * package, used by DoodleViewPlayer#PlayEngine
@@ -163,13 +164,19 @@ public abstract class PlayController implements Available {
         pendingRunWithDelay(runnable, delay);
     }
 
+    /**
+     * 在播放器的调度线程中延迟执行, 取代之前还没有执行的任务. 等待期间不占用线程.
+     */
     protected final void pendingRunWithDelay(final Runnable runnable, final long delay) {
-        mPendingRunnable = new PendingRunnable(runnable, delay);
-        enqueue(mPendingRunnable);
-    }
-
-    private void enqueue(Runnable runnable) {
-        mPlayer.getTaskQueue().enqueue(runnable);
+        Handler handler = DoodleViewPlayer.getHandler();
+        PendingRunnable pendingRunnable = new PendingRunnable(runnable);
+        PendingRunnable pendingRunnableOld = mPendingRunnable;
+        mPendingRunnable = pendingRunnable;
+        if (pendingRunnableOld != null) {
+            // 被取代的任务不再需要执行
+            handler.removeCallbacks(pendingRunnableOld);
+        }
+        handler.postAtTime(pendingRunnable, SystemClock.uptimeMillis() + Math.max(0L, delay));
     }
 
     @Override
@@ -184,32 +191,19 @@ public abstract class PlayController implements Available {
     private class PendingRunnable implements Runnable {
 
         private final Runnable mTarget;
-        private final long mTimeStart;
-        private final long mDelay;
 
-        private static final long DELAY_INTERVAL_MAX = 100L; // 100ms
-
-        private PendingRunnable(Runnable target, long delay) {
+        private PendingRunnable(Runnable target) {
             mTarget = target;
-            mTimeStart = SystemClock.uptimeMillis();
-            mDelay = delay;
         }
 
         @Override
         public void run() {
+            // 取消时可能已经开始执行，仍然需要校验
             if (!isPendingRunnableAvailable(this)) {
                 return;
             }
 
-            long timeNow = SystemClock.uptimeMillis();
-            long delayRemain = mDelay - (timeNow - mTimeStart);
-            if (delayRemain <= 0L) {
-                mTarget.run();
-                return;
-            }
-
-            Threads.sleepQuietly(Math.min(delayRemain, DELAY_INTERVAL_MAX));
-            enqueue(this);
+            mTarget.run();
         }
 
     }
@@ -0,0 +1,82 @@
+package com.idonans.doodle;
+
+import com.idonans.doodle.brush.Brush;
+import com.idonans.doodle.brush.Pencil;
+import com.idonans.doodle.drawstep.ScribbleDrawStep;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 触摸采样到绘画步骤的稳定状态不分配对象: 取出采样 -> 复用的 ScrollGestureAction -> ScribbleDrawStep#toPoint.
+ * 本地单元测试中 android.graphics 的方法是空实现, 这里只统计 Java 堆上的分配.
+ * Created by pengji on 16-7-30.
+ */
+public class TouchSampleBatcherAllocationTest {
+
+    // 每一批触摸采样中的轨迹点数量, 相当于一帧中的历史采样
+    private static final int POINTS_PER_BATCH = 8;
+    // 预热使 JIT 完成编译, 轨迹点数组扩容到稳定的大小
+    private static final int WARM_UP_BATCHES = 20000;
+    private static final int MEASURED_BATCHES = 1000;
+
+    @Test
+    public void scrollBatchesDoNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        final Brush brush = new Pencil(0xff000000, 10, 255);
+        final ScribbleDrawStep drawStep = new ScribbleDrawStep(brush, 0f, 0f);
+        final TouchSampleRing ring = new TouchSampleRing(256);
+        final int[] dispatched = new int[1];
+        TouchSampleBatcher batcher = new TouchSampleBatcher() {
+            @Override
+            protected void onGestureAction(DoodleView.GestureAction gestureAction) {
+                if (!drawStep.dispatchGestureAction(gestureAction, brush)) {
+                    throw new AssertionError("gesture action not consumed");
+                }
+                dispatched[0]++;
+            }
+        };
+
+        assertTrue(ring.offer(TouchSampleRing.TYPE_SCROLL_START, 0f, 0f));
+        runBatches(ring, batcher, 0, WARM_UP_BATCHES);
+        // 坐标点缓冲区按倍数扩容(均摊), 预留测量期间需要的空间, 只测量稳定状态
+        drawStep.getPoints().ensureCapacity(drawStep.getPoints().size() + MEASURED_BATCHES * POINTS_PER_BATCH * 2);
+
+        long threadId = Thread.currentThread().getId();
+        // 读取分配计数本身的开销
+        long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        long baseline = threadMXBean.getThreadAllocatedBytes(threadId) - start;
+
+        start = threadMXBean.getThreadAllocatedBytes(threadId);
+        runBatches(ring, batcher, WARM_UP_BATCHES, MEASURED_BATCHES);
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - start - baseline;
+
+        assertEquals(WARM_UP_BATCHES + MEASURED_BATCHES, dispatched[0]);
+        assertEquals(1 + (WARM_UP_BATCHES + MEASURED_BATCHES) * POINTS_PER_BATCH, drawStep.getPoints().getPointCount());
+        assertTrue("allocated " + allocated + " bytes in steady state", allocated <= 0);
+    }
+
+    private static void runBatches(TouchSampleRing ring, TouchSampleBatcher batcher, int from, int count) {
+        for (int batch = from; batch < from + count; batch++) {
+            for (int i = 0; i < POINTS_PER_BATCH; i++) {
+                float t = batch * POINTS_PER_BATCH + i;
+                if (!ring.offer(TouchSampleRing.TYPE_SCROLL_MOVE, t % 1000f, t % 700f)) {
+                    throw new AssertionError("touch sample ring is full");
+                }
+            }
+            ring.drain(batcher);
+            batcher.flush();
+        }
+    }
+
+}